@@ -0,0 +1,77 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures creating the black tiles at the start of a game and uncovering
+ * them as the player moves.
+ *
+ * The player walks through the whole maze in rows, so most moves uncover
+ * nothing once the first pass is over, as in a real game.
+ * @author Matúš Sulír
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FogBenchmark {
+    private FogOfWar fog;
+    private int x;
+    private int y;
+    private int xStep = (int) Player.SPEED;
+    
+    @Setup(Level.Iteration)
+    public void createFog() {
+        fog = new FogOfWar(Game.WIDTH, Game.HEIGHT);
+        x = 0;
+        y = 0;
+    }
+    
+    @Benchmark
+    public FogOfWar create() {
+        return new FogOfWar(Game.WIDTH, Game.HEIGHT);
+    }
+    
+    @Benchmark
+    public boolean reveal() {
+        x += xStep;
+        
+        if (x < 0 || x >= Game.WIDTH) {
+            xStep = -xStep;
+            x += xStep;
+            y = (y + FogGrid.TILE_SIZE) % Game.HEIGHT;
+        }
+        
+        return fog.reveal(x, y);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures one movement step of the player among dense or sparse walls.
+ *
+ * When the player gets stuck, it turns to the next direction, so the
+ * benchmark covers both free movement and sliding along walls. The walls are
+ * enclosed by a solid border, so the player never leaves them.
+ * @author Matúš Sulír
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MovementBenchmark {
+    private static final int[] DIRECTIONS = {KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_UP};
+    private static final int BORDER = 5;
+    
+    @Param({"dense", "sparse"})
+    private String walls;
+    
+    private Movement movement;
+    private int direction;
+    
+    @Setup
+    public void createMaze() throws IOException {
+        int blockCount = walls.equals("dense") ? 2000 : 20;
+        CollisionMask mask = new CollisionMask(0, 0, Game.WIDTH, Game.HEIGHT);
+        Random random = new Random(42);
+        
+        for (int y = 0; y < Game.HEIGHT; y++) {
+            for (int x = 0; x < Game.WIDTH; x++) {
+                if (x < BORDER || y < BORDER || x >= Game.WIDTH - BORDER || y >= Game.HEIGHT - BORDER)
+                    mask.setBlocked(x, y);
+            }
+        }
+        
+        for (int i = 0; i < blockCount; i++) {
+            int left = random.nextInt(Game.WIDTH);
+            int top = random.nextInt(Game.HEIGHT);
+            
+            for (int y = top; y < top + 5; y++) {
+                for (int x = left; x < left + 5; x++)
+                    mask.setBlocked(x, y);
+            }
+        }
+        
+        CollisionMask dilated = mask.dilate(Player.getFootprint());
+        movement = new Movement(dilated, new DistanceField(dilated));
+        movement.placeTo(findFreePoint(dilated));
+        movement.setKey(DIRECTIONS[direction], true);
+    }
+    
+    @Benchmark
+    public boolean step() {
+        boolean moved = movement.step();
+        
+        if (!moved) {
+            movement.setKey(DIRECTIONS[direction], false);
+            direction = (direction + 1) % DIRECTIONS.length;
+            movement.setKey(DIRECTIONS[direction], true);
+        }
+        
+        return moved;
+    }
+    
+    /**
+     * Finds a free point in the largest area the player can move around in,
+     * so the player does not get trapped in a small pocket among the walls.
+     */
+    private static Point findFreePoint(CollisionMask mask) {
+        boolean[] visited = new boolean[Game.WIDTH * Game.HEIGHT];
+        int[] queue = new int[Game.WIDTH * Game.HEIGHT];
+        int bestStart = -1;
+        int bestSize = 0;
+        
+        for (int start = 0; start < visited.length; start++) {
+            if (visited[start] || mask.isBlocked(start % Game.WIDTH, start / Game.WIDTH))
+                continue;
+            
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            visited[start] = true;
+            
+            while (head < tail) {
+                int index = queue[head++];
+                int x = index % Game.WIDTH;
+                int y = index / Game.WIDTH;
+                int[] neighbors = {x > 0 ? index - 1 : -1, x < Game.WIDTH - 1 ? index + 1 : -1,
+                    y > 0 ? index - Game.WIDTH : -1, y < Game.HEIGHT - 1 ? index + Game.WIDTH : -1};
+                
+                for (int neighbor : neighbors) {
+                    if (neighbor >= 0 && !visited[neighbor]
+                            && !mask.isBlocked(neighbor % Game.WIDTH, neighbor / Game.WIDTH)) {
+                        visited[neighbor] = true;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            
+            if (tail > bestSize) {
+                bestSize = tail;
+                bestStart = start;
+            }
+        }
+        
+        if (bestStart < 0)
+            throw new IllegalStateException("The whole maze is blocked");
+        
+        return new Point(bestStart % Game.WIDTH, bestStart / Game.WIDTH);
+    }
+}
@@ -31,7 +31,10 @@ import java.awt.event.KeyEvent;
 import java.io.IOException;
 import lostmazed.editor.ImageDialog;
 import lostmazed.editor.MazeDialog;
+import lostmazed.game.Assets;
+import lostmazed.game.Campaign;
 import lostmazed.game.Game;
+import lostmazed.game.GameClock;
 import lostmazed.game.Maze;
 import lostmazed.game.Player;
 import soga2d.GraphicBoard;
@@ -45,12 +48,18 @@ import soga2d.objects.Picture;
  * @author Matúš Sulír
  */
 public class MainMenu {
+    /**
+     * The resource name of the menu background.
+     */
+    static final String IMAGE = "lostmazed/res/menu.png";
+    
     private GraphicBoard board;
     private Picture menuPicture;
     private Text storyMode;
     private Text mazeEditor;
     private Text loadMaze;
     private Text exit;
+    private GameClock clock = new GameClock();
     
     /**
      * Constructs the menu.
@@ -60,7 +69,7 @@ public class MainMenu {
         this.board = board;
         
         try {
-            menuPicture = new Picture("lostmazed/res/menu.png");
+            menuPicture = new Picture(Assets.getImage(IMAGE));
         } catch (IOException ex) {}
             
         Font font = new Font("Arial", Font.BOLD, 20);
@@ -103,6 +112,8 @@ public class MainMenu {
      * Displays the menu.
      */
     public void show() {
+        clock.clear();
+        
         board.lock();
         board.clear();
         board.addObjects(menuPicture, storyMode, mazeEditor, loadMaze, exit);
@@ -121,8 +132,12 @@ public class MainMenu {
      * Starts a new game in the story mode.
      */
     private void storyMode() {
-        Game game = new Game(board, this);
-        new Story(board, this, game).show(1);
+        try {
+            Game game = new Game(board, this, Campaign.getDefault());
+            new Story(board, this, game).show(1);
+        } catch (IOException ex) {
+            new MessageDialog(board, "Could not load the game resources.").openOK();
+        }
     }
     
     /**
@@ -141,7 +156,8 @@ public class MainMenu {
         if (dialog.showOpenDialog(null) == ImageDialog.APPROVE_OPTION) {
             try {
                 Maze maze = Maze.load(dialog.getSelectedFile());
-                Player player = new Player(board, maze);
+                clock.clear();
+                Player player = new Player(board, maze, clock);
                 
                 maze.play(board, player, new Runnable() {
                     @Override
@@ -154,6 +170,7 @@ public class MainMenu {
                         });
                     }
                 });
+                clock.start();
             } catch (IOException ex) {
                 new MessageDialog(board, "The maze could not be loaded.").openOK();
             }
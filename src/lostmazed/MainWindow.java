@@ -29,7 +29,12 @@
  */
 package lostmazed;
 
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import javax.swing.UIManager;
+import lostmazed.game.DirtyRepaintManager;
+import lostmazed.game.DisplayImages;
+import lostmazed.game.StartupTimes;
 
 /**
  * The main application window.
@@ -42,11 +47,33 @@ public class MainWindow extends javax.swing.JFrame {
 
     /** Creates new form MainWindow */
     public MainWindow() {
+        DirtyRepaintManager.install();
         initComponents();
+        watchDisplay();
         mainPanel.requestFocus();
         new MainMenu(mainPanel.getBoard()).show();
     }
 
+    /**
+     * Tells the image preparation about the display configuration of the
+     * game panel, now and whenever the window moves or is shown.
+     */
+    private void watchDisplay() {
+        DisplayImages.setConfiguration(mainPanel.getGraphicsConfiguration());
+        
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentMoved(ComponentEvent event) {
+                DisplayImages.setConfiguration(mainPanel.getGraphicsConfiguration());
+            }
+            
+            @Override
+            public void componentShown(ComponentEvent event) {
+                DisplayImages.setConfiguration(mainPanel.getGraphicsConfiguration());
+            }
+        });
+    }
+
     /** This method is called from within the constructor to
      * initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is
@@ -94,6 +121,9 @@ public class MainWindow extends javax.swing.JFrame {
      * @param args the command line arguments
      */
     public static void main(String args[]) {
+        /* Start loading the assets while the window is being created */
+        Startup.begin();
+        
         /* Set the system look and feel */
         //<editor-fold defaultstate="collapsed" desc=" Look and feel setting code (optional) ">
         try {
@@ -115,6 +145,7 @@ public class MainWindow extends javax.swing.JFrame {
             @Override
             public void run() {
                 new MainWindow().setVisible(true);
+                StartupTimes.expectMenu();
             }
         });
     }
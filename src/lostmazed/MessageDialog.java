@@ -60,6 +60,14 @@ public class MessageDialog {
         window.addSubobject(messageText);
     }
     
+    /**
+     * Shows the dialog without any buttons, e.g. while some work is in
+     * progress. Such a dialog can be closed only by calling {@link #close()}.
+     */
+    public void open() {
+        board.addObject(window);
+    }
+    
     /**
      * Shows the dialog with one button named "OK".
      */
@@ -0,0 +1,106 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed;
+
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import lostmazed.game.Assets;
+import lostmazed.game.Campaign;
+import lostmazed.game.Maze;
+import lostmazed.game.Player;
+import lostmazed.game.SpriteAtlas;
+import lostmazed.game.StartupTimes;
+import lostmazed.game.WorkerPool;
+
+/**
+ * Loads the assets needed at the start of the program in parallel.
+ * 
+ * The menu image, the player sprites and the first maze of the story are
+ * decoded by the worker pool in this order, while the window is being
+ * created. The menu waits only for its own image (loading it itself if no
+ * worker has started yet); the rest is ready in the caches by the time the
+ * story mode is chosen. The duration of every stage is logged.
+ * @author Matúš Sulír
+ */
+public class Startup {
+    private static final Logger logger = Logger.getLogger(Startup.class.getName());
+    
+    private Startup() {
+    }
+    
+    /**
+     * Starts loading all assets in the background.
+     */
+    public static void begin() {
+        StartupTimes.mark("Startup began");
+        
+        submit("Menu image", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return Assets.getImage(MainMenu.IMAGE);
+            }
+        });
+        
+        submit("Player sprites", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return SpriteAtlas.getPlayer();
+            }
+        });
+        
+        submit("First story maze", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Maze maze = Maze.loadResource(Campaign.getDefault().getMaze(1));
+                maze.getDistanceField(Player.getFootprint());
+                
+                return maze;
+            }
+        });
+    }
+    
+    /**
+     * Runs a stage in the worker pool, logging its duration. A failed stage
+     * is only logged, since the asset will be loaded again when needed and
+     * the error reported to the user then.
+     * @param stage the stage name
+     * @param loader the task loading the asset
+     */
+    private static void submit(final String stage, final Callable<Object> loader) {
+        WorkerPool.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                
+                try {
+                    loader.call();
+                    StartupTimes.record(stage, System.nanoTime() - start);
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, stage + " could not be loaded in advance", ex);
+                }
+            }
+        });
+    }
+}
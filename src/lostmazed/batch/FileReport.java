@@ -0,0 +1,183 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.batch;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * The result of processing one maze file in a batch.
+ * @author Matúš Sulír
+ */
+public class FileReport {
+    /**
+     * The names of the report columns, separated by tabulators.
+     */
+    public static final String HEADER = "file\tstatus\tversion\tload ms\tsolve ms\tsave ms"
+            + "\tpath length\tbytes before\tbytes after\tmessage";
+    
+    /**
+     * The outcome of processing a file.
+     */
+    public enum Status {
+        /** The file is valid and the maze can be finished. */
+        OK,
+        /** The file is valid, but the end can not be reached. */
+        UNSOLVABLE,
+        /** The file could not be loaded or saved. */
+        FAILED
+    }
+    
+    private final File file;
+    private Status status = Status.OK;
+    private int version = -1;
+    private long loadNanos = -1;
+    private long solveNanos = -1;
+    private long saveNanos = -1;
+    private int pathLength = -1;
+    private long bytesBefore = -1;
+    private long bytesAfter = -1;
+    private String message = "";
+    
+    /**
+     * Constructs an empty report.
+     * @param file the processed file
+     */
+    public FileReport(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * Returns the processed file.
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Returns the outcome.
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+    
+    /**
+     * Sets the outcome and the message explaining it.
+     * @param status the status
+     * @param message the message for the user
+     */
+    public void setStatus(Status status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+    
+    /**
+     * Sets the format version of the file.
+     * @param version the version number
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+    
+    /**
+     * Sets the time spent by loading and decoding the maze.
+     * @param nanos the time in nanoseconds
+     */
+    public void setLoadTime(long nanos) {
+        loadNanos = nanos;
+    }
+    
+    /**
+     * Sets the time spent by finding the shortest path.
+     * @param nanos the time in nanoseconds
+     */
+    public void setSolveTime(long nanos) {
+        solveNanos = nanos;
+    }
+    
+    /**
+     * Sets the time spent by encoding and saving the maze.
+     * @param nanos the time in nanoseconds
+     */
+    public void setSaveTime(long nanos) {
+        saveNanos = nanos;
+    }
+    
+    /**
+     * Sets the length of the shortest path from the start to the end.
+     * @param length the number of steps
+     */
+    public void setPathLength(int length) {
+        pathLength = length;
+    }
+    
+    /**
+     * Sets the file size before processing.
+     * @param bytes the size in bytes
+     */
+    public void setBytesBefore(long bytes) {
+        bytesBefore = bytes;
+    }
+    
+    /**
+     * Sets the file size after it was saved again.
+     * @param bytes the size in bytes
+     */
+    public void setBytesAfter(long bytes) {
+        bytesAfter = bytes;
+    }
+    
+    /**
+     * Returns the report as one line with the columns described by
+     * {@link #HEADER}. Unknown values are left empty.
+     * @return the tab-separated line
+     */
+    @Override
+    public String toString() {
+        return file.getPath() + "\t" + status + "\t" + format(version) + "\t" + formatMillis(loadNanos)
+                + "\t" + formatMillis(solveNanos) + "\t" + formatMillis(saveNanos) + "\t" + format(pathLength)
+                + "\t" + format(bytesBefore) + "\t" + format(bytesAfter) + "\t" + message;
+    }
+    
+    /**
+     * Formats a value which may be unknown.
+     * @param value the value or a negative number if it is unknown
+     * @return the formatted value
+     */
+    private static String format(long value) {
+        return (value < 0) ? "" : Long.toString(value);
+    }
+    
+    /**
+     * Formats a time in milliseconds.
+     * @param nanos the time in nanoseconds or a negative number if it is
+     * unknown
+     * @return the formatted time
+     */
+    private static String formatMillis(long nanos) {
+        return (nanos < 0) ? "" : String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.batch;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lostmazed.game.Maze;
+import lostmazed.game.MazeCollisions;
+import lostmazed.game.MazeSolution;
+
+/**
+ * The command-line tool which checks and re-encodes many maze files at once.
+ * 
+ * Every file is verified, both its images are decoded and the shortest path
+ * from the start to the end is found. Optionally, the file is saved again
+ * with maximally compressed images. The files are processed in parallel and
+ * a tab-separated report with one line per file is written.
+ * 
+ * Usage: <code>java -cp Lostmazed.jar lostmazed.batch.MazeBatch [options]
+ * file-or-directory...</code>
+ * @author Matúš Sulír
+ */
+public class MazeBatch {
+    private static final String USAGE = "Usage: MazeBatch [options] file-or-directory...\n"
+            + "  -reencode       save the files again with maximally compressed images\n"
+            + "  -upgrade        when re-encoding, convert older files to the current format\n"
+            + "  -threads <n>    the number of files processed in parallel\n"
+            + "  -report <file>  write the report into a file instead of the standard output";
+    
+    private boolean reencode;
+    private boolean upgrade;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Constructs a batch with the default options.
+     */
+    public MazeBatch() {
+    }
+    
+    /**
+     * Runs the tool.
+     * 
+     * The exit status is 0 if all files are valid and solvable, 1 if any of
+     * them is not and 2 if the arguments are wrong.
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        
+        MazeBatch batch = new MazeBatch();
+        List<File> inputs = new ArrayList<File>();
+        File reportFile = null;
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-reencode"))
+                    batch.setReencode(true);
+                else if (args[i].equals("-upgrade"))
+                    batch.setUpgrade(true);
+                else if (args[i].equals("-threads") && i + 1 < args.length)
+                    batch.setThreads(Integer.parseInt(args[++i]));
+                else if (args[i].equals("-report") && i + 1 < args.length)
+                    reportFile = new File(args[++i]);
+                else if (args[i].startsWith("-"))
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                else
+                    inputs.add(new File(args[i]));
+            }
+            
+            if (inputs.isEmpty())
+                throw new IllegalArgumentException("No files specified");
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        
+        PrintStream report = System.out;
+        
+        try {
+            if (reportFile != null)
+                report = new PrintStream(new FileOutputStream(reportFile), false, "UTF-8");
+            
+            List<File> files = new ArrayList<File>();
+            
+            for (File input : inputs)
+                collect(input, files);
+            
+            long time = System.nanoTime();
+            int failures = batch.run(files, report);
+            time = System.nanoTime() - time;
+            
+            System.err.printf("%d files processed in %.1f s, %d with problems%n", files.size(), time / 1e9, failures);
+            System.exit(failures == 0 ? 0 : 1);
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+        } finally {
+            if (report != System.out)
+                report.close();
+        }
+    }
+    
+    /**
+     * Sets whether the processed files should be saved again with maximally
+     * compressed images.
+     * @param reencode true to save the files
+     */
+    public void setReencode(boolean reencode) {
+        this.reencode = reencode;
+    }
+    
+    /**
+     * Sets whether files in an older format should be converted to the
+     * current one when re-encoding. Without it, they are only checked.
+     * @param upgrade true to convert older files
+     */
+    public void setUpgrade(boolean upgrade) {
+        this.upgrade = upgrade;
+    }
+    
+    /**
+     * Sets the number of files processed in parallel.
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be positive");
+        
+        this.threads = threads;
+    }
+    
+    /**
+     * Processes the files in parallel and prints the report.
+     * 
+     * The report lines are printed in the order of the files, each as soon
+     * as the file and all files before it are processed.
+     * @param files the maze files
+     * @param report the stream to print the report to
+     * @return the number of files which are not valid or solvable
+     */
+    public int run(List<File> files, PrintStream report) {
+        // the files have their own pool because saving waits for tasks in the worker pool
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<FileReport>> results = new ArrayList<Future<FileReport>>();
+        int failures = 0;
+        
+        try {
+            for (final File file : files) {
+                results.add(executor.submit(new Callable<FileReport>() {
+                    @Override
+                    public FileReport call() {
+                        return process(file);
+                    }
+                }));
+            }
+            
+            report.println(FileReport.HEADER);
+            
+            for (int i = 0; i < files.size(); i++) {
+                FileReport fileReport = getResult(files.get(i), results.get(i));
+                report.println(fileReport);
+                
+                if (fileReport.getStatus() != FileReport.Status.OK)
+                    failures++;
+            }
+            
+            report.flush();
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Checks and optionally re-encodes one maze file.
+     * @param file the maze file
+     * @return the report
+     */
+    public FileReport process(File file) {
+        FileReport report = new FileReport(file);
+        report.setBytesBefore(file.length());
+        
+        try {
+            long time = System.nanoTime();
+            int version = Maze.readVersion(file);
+            report.setVersion(version);
+            Maze maze = Maze.load(file);
+            report.setLoadTime(System.nanoTime() - time);
+            
+            if ((long) maze.getWorldWidth() * maze.getWorldHeight() > MazeCollisions.DERIVED_DATA_LIMIT) {
+                report.setStatus(FileReport.Status.OK, "The maze is too large to check the path");
+            } else {
+                time = System.nanoTime();
+                MazeSolution solution = maze.solve();
+                report.setSolveTime(System.nanoTime() - time);
+                
+                if (solution.isSolvable())
+                    report.setPathLength(solution.getLength());
+                else
+                    report.setStatus(FileReport.Status.UNSOLVABLE, "The end can not be reached");
+            }
+            
+            if (reencode) {
+                if (version < Maze.VERSION && !upgrade) {
+                    report.setStatus(report.getStatus(), "Not re-encoded, the format is old");
+                } else {
+                    time = System.nanoTime();
+                    maze.save(file, true);
+                    report.setSaveTime(System.nanoTime() - time);
+                    report.setBytesAfter(file.length());
+                }
+            }
+        } catch (IOException ex) {
+            report.setStatus(FileReport.Status.FAILED, getMessage(ex));
+        } catch (RuntimeException ex) {
+            report.setStatus(FileReport.Status.FAILED, ex.toString());
+        }
+        
+        return report;
+    }
+    
+    /**
+     * Adds the file or all maze files in the directory and its
+     * subdirectories to the list, sorted by name.
+     * @param input the file or directory
+     * @param files the list to add to
+     * @throws IOException when the file does not exist
+     */
+    private static void collect(File input, List<File> files) throws IOException {
+        if (input.isDirectory()) {
+            File[] children = input.listFiles();
+            
+            if (children == null)
+                throw new IOException("The directory " + input + " could not be read");
+            
+            Arrays.sort(children);
+            
+            for (File child : children) {
+                if (child.isDirectory() || child.getName().toLowerCase().endsWith(".maze"))
+                    collect(child, files);
+            }
+        } else if (input.isFile()) {
+            files.add(input);
+        } else {
+            throw new IOException("The file " + input + " does not exist");
+        }
+    }
+    
+    /**
+     * Waits for a file to be processed.
+     * @param file the file
+     * @param result the result of the processing task
+     * @return the report
+     */
+    private static FileReport getResult(File file, Future<FileReport> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            FileReport report = new FileReport(file);
+            report.setStatus(FileReport.Status.FAILED, "Interrupted");
+            return report;
+        } catch (ExecutionException ex) {
+            FileReport report = new FileReport(file);
+            report.setStatus(FileReport.Status.FAILED, ex.getCause().toString());
+            return report;
+        }
+    }
+    
+    /**
+     * Returns the message of an exception together with the messages of its
+     * causes.
+     * @param exception the exception
+     * @return the message
+     */
+    private static String getMessage(Throwable exception) {
+        StringBuilder message = new StringBuilder(String.valueOf(exception.getMessage()));
+        
+        for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause())
+            message.append(": ").append(cause.getMessage());
+        
+        return message.toString();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.editor;
+
+import java.awt.GridLayout;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+import lostmazed.game.Game;
+import lostmazed.generator.MazeAlgorithm;
+import lostmazed.generator.MazeGenerator;
+
+/**
+ * The dialog used to set up a procedurally generated maze.
+ * @author Matúš Sulír
+ */
+public class GeneratorDialog extends JPanel {
+    private static final int MAX_CELLS = 4096;
+    
+    private JComboBox algorithm = new JComboBox(MazeAlgorithm.values());
+    private JSpinner columns;
+    private JSpinner rows;
+    private JSpinner corridorWidth;
+    private JTextField seed = new JTextField();
+    
+    /**
+     * Constructs the dialog with the settings filling one board.
+     */
+    public GeneratorDialog() {
+        int corridor = MazeGenerator.DEFAULT_CORRIDOR_WIDTH;
+        columns = new JSpinner(new SpinnerNumberModel(MazeGenerator.getCellCount(Game.WIDTH, corridor), 1, MAX_CELLS, 1));
+        rows = new JSpinner(new SpinnerNumberModel(MazeGenerator.getCellCount(Game.HEIGHT, corridor), 1, MAX_CELLS, 1));
+        corridorWidth = new JSpinner(new SpinnerNumberModel(corridor, 1, 200, 1));
+        
+        setLayout(new GridLayout(0, 2, 5, 5));
+        add(new JLabel("Algorithm:"));
+        add(algorithm);
+        add(new JLabel("Columns:"));
+        add(columns);
+        add(new JLabel("Rows:"));
+        add(rows);
+        add(new JLabel("Corridor width:"));
+        add(corridorWidth);
+        add(new JLabel("Seed (empty = random):"));
+        add(seed);
+    }
+    
+    /**
+     * Shows the dialog and waits until the user closes it.
+     * @return the generator with the chosen settings or null if the user
+     * cancelled the dialog
+     */
+    public MazeGenerator showDialog() {
+        int result = JOptionPane.showConfirmDialog(null, this, "Generate maze",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        
+        if (result != JOptionPane.OK_OPTION)
+            return null;
+        
+        return new MazeGenerator((MazeAlgorithm) algorithm.getSelectedItem(),
+                (Integer) columns.getValue(), (Integer) rows.getValue(),
+                (Integer) corridorWidth.getValue(), getSeed());
+    }
+    
+    /**
+     * Returns the seed typed by the user. Numbers are used directly, any
+     * other text is hashed and an empty field means a random seed.
+     * @return the seed
+     */
+    private long getSeed() {
+        String text = seed.getText().trim();
+        
+        if (text.isEmpty()) {
+            long random = System.nanoTime();
+            seed.setText(Long.toString(random));
+            return random;
+        }
+        
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException ex) {
+            return text.hashCode();
+        }
+    }
+}
@@ -24,14 +24,40 @@
 package lostmazed.editor;
 
 import lostmazed.game.Game;
+import java.awt.AWTEvent;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.EventQueue;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.event.AWTEventListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
 import lostmazed.*;
+import lostmazed.game.DisplayImages;
+import lostmazed.game.Footprint;
+import lostmazed.game.GameClock;
 import lostmazed.game.Maze;
+import lostmazed.game.MazeCollisions;
+import lostmazed.game.MazeSolution;
+import lostmazed.game.MazeSolver;
 import lostmazed.game.Player;
+import lostmazed.game.WorkerPool;
+import lostmazed.generator.CellGrid;
+import lostmazed.generator.MazeGenerator;
 import soga2d.GraphicBoard;
 import soga2d.GraphicObject;
 import soga2d.events.KeyListener;
@@ -49,15 +75,28 @@ public class MazeEditor {
     private static final Color BUTTON_COLOR = Color.WHITE;
     private static final Color BUTTON_FILL = new Color(0, 0, 0, 100);
     private static final Font MARKER_FONT = new Font("Arial", Font.BOLD, 9);
+    private static final Font STATUS_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Color PATH_COLOR = new Color(255, 255, 0, 150);
+    private static ExecutorService saver;
     
     private GraphicBoard board;
     private MainMenu menu;
     private Maze maze;
-    private GraphicObject newMaze, load, setBackground, setMaze, test, save, exit;
+    private GraphicObject newMaze, load, setBackground, setMaze, generate, test, save, exit;
     private Rectangle start;
     private Rectangle end;
+    private BufferedImage pathImage = DisplayImages.create(Game.WIDTH, Game.HEIGHT, Transparency.TRANSLUCENT);
+    private GraphicObject path = new Picture(pathImage);
+    private GraphicObject status;
+    private Point validatedStart;
+    private Point validatedEnd;
+    private int validationNumber;
+    private AWTEventListener markerWatcher;
     private ImageDialog imageDialog = new ImageDialog();
     private MazeDialog mazeDialog = new MazeDialog();
+    private GeneratorDialog generatorDialog = new GeneratorDialog();
+    private GameClock clock = new GameClock();
+    private boolean saving;
     
     /**
      * Constructs a maze editor.
@@ -96,21 +135,28 @@ public class MazeEditor {
             }
         });
         
-        test = createButton("Test", 110, 115, 100, new MouseClickListener() {
+        generate = createButton("Generate walls", 110, 115, 100, new MouseClickListener() {
+            @Override
+            public void onClick() {
+                generate();
+            }
+        });
+        
+        test = createButton("Test", 110, 150, 100, new MouseClickListener() {
             @Override
             public void onClick() {
                 test();
             }
         });
         
-        save = createButton("Save", 110, 150, 100, new MouseClickListener() {
+        save = createButton("Save", 110, 185, 100, new MouseClickListener() {
             @Override
             public void onClick() {
                 save();
             }
         });
         
-        exit = createButton("Exit editor", 110, 185, 100, new MouseClickListener() {
+        exit = createButton("Exit editor", 110, 220, 100, new MouseClickListener() {
             @Override
             public void onClick() {
                 exit();
@@ -135,6 +181,8 @@ public class MazeEditor {
      * Shows the maze editor.
      */
     public void show() {
+        clock.clear();
+        
         board.lock();
         board.clear();
 
@@ -142,7 +190,13 @@ public class MazeEditor {
         end.moveTo((int) maze.getEnd().getX(), (int) maze.getEnd().getY());
         
         maze.addToBoard(board);
-        board.addObjects(newMaze, load, setBackground, setMaze, test, save, exit, start, end);
+        board.addObjects(path, newMaze, load, setBackground, setMaze, generate, test, save, exit, start, end);
+        
+        status = null;
+        validatedStart = null;
+        validatedEnd = null;
+        validateIfMoved();
+        watchMarkers();
 
         board.setKeyPressListener(new KeyListener() {
             @Override
@@ -173,10 +227,173 @@ public class MazeEditor {
         return button;
     }
     
+    /**
+     * Starts validating the maze whenever the user releases the mouse
+     * button, which ends dragging of a marker.
+     */
+    private void watchMarkers() {
+        if (markerWatcher != null)
+            return;
+        
+        markerWatcher = new AWTEventListener() {
+            @Override
+            public void eventDispatched(AWTEvent event) {
+                if (event.getID() == MouseEvent.MOUSE_RELEASED) {
+                    // let the board finish the drag first
+                    EventQueue.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (markerWatcher != null)
+                                validateIfMoved();
+                        }
+                    });
+                }
+            }
+        };
+        
+        Toolkit.getDefaultToolkit().addAWTEventListener(markerWatcher, AWTEvent.MOUSE_EVENT_MASK);
+    }
+    
+    /**
+     * Stops validating the maze after the markers are moved, e.g. when the
+     * editor is left or the maze is being tested.
+     */
+    private void stopWatchingMarkers() {
+        if (markerWatcher != null) {
+            Toolkit.getDefaultToolkit().removeAWTEventListener(markerWatcher);
+            markerWatcher = null;
+        }
+        
+        validationNumber++;
+    }
+    
+    /**
+     * Validates the maze if any of the markers was moved since the last
+     * validation.
+     */
+    private void validateIfMoved() {
+        Point startLocation = start.getRectangle().getLocation();
+        Point endLocation = end.getRectangle().getLocation();
+        
+        if (!startLocation.equals(validatedStart) || !endLocation.equals(validatedEnd)) {
+            validatedStart = startLocation;
+            validatedEnd = endLocation;
+            validate();
+        }
+    }
+    
+    /**
+     * Checks whether the maze can be finished and shows the shortest path.
+     * 
+     * The path is searched for in the worker pool and the result is shown
+     * on the event dispatch thread, unless another validation was started
+     * in the meantime. The maze itself is not modified.
+     */
+    private void validate() {
+        final int number = ++validationNumber;
+        
+        if ((long) maze.getWorldWidth() * maze.getWorldHeight() > MazeCollisions.DERIVED_DATA_LIMIT) {
+            showValidation(null, "The maze is too large to validate");
+            return;
+        }
+        
+        final Maze validatedMaze = maze;
+        final Point startPoint = validatedStart;
+        final Point endPoint = validatedEnd;
+        final int worldWidth = maze.getWorldWidth();
+        final int worldHeight = maze.getWorldHeight();
+        
+        WorkerPool.get().submit(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                MazeSolution solution = null;
+                
+                try {
+                    Footprint footprint = Player.getFootprint();
+                    MazeSolver solver = new MazeSolver(validatedMaze.getCollisions().getObstacles(footprint),
+                            worldWidth, worldHeight, footprint);
+                    solution = solver.solve(startPoint, endPoint);
+                    
+                    if (solution.isSolvable())
+                        message = "Shortest path: " + solution.getLength() + " steps";
+                    else
+                        message = "The end can not be reached";
+                } catch (IOException ex) {
+                    message = "Could not load the game resources";
+                }
+                
+                final MazeSolution result = solution;
+                final String resultMessage = message;
+                
+                EventQueue.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (number == validationNumber)
+                            showValidation(result, resultMessage);
+                    }
+                });
+            }
+        });
+    }
+    
+    /**
+     * Shows the result of the validation.
+     * @param solution the solution or null to draw no path
+     * @param message the status message
+     */
+    private void showValidation(MazeSolution solution, String message) {
+        board.lock();
+        drawPath(solution);
+        
+        if (status != null)
+            board.removeObject(status);
+        
+        status = new Text(message, 10, Game.HEIGHT - 25, STATUS_FONT, BUTTON_COLOR);
+        board.addObject(status);
+        board.unlock();
+    }
+    
+    /**
+     * Draws the path through the centers of the player positions.
+     * @param solution the solution or null to draw no path
+     */
+    private void drawPath(MazeSolution solution) {
+        Graphics2D graphics = pathImage.createGraphics();
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.fillRect(0, 0, pathImage.getWidth(), pathImage.getHeight());
+        
+        if (solution != null && solution.isSolvable()) {
+            try {
+                int centerX = Player.getFootprint().getWidth() / 2;
+                int centerY = Player.getFootprint().getHeight() / 2;
+                int length = solution.getLength();
+                int[] xs = new int[length + 1];
+                int[] ys = new int[length + 1];
+                
+                for (int i = 0; i <= length; i++) {
+                    xs[i] = solution.getX(i) + centerX;
+                    ys[i] = solution.getY(i) + centerY;
+                }
+                
+                graphics.setComposite(AlphaComposite.Src);
+                graphics.setColor(PATH_COLOR);
+                graphics.setStroke(new BasicStroke(3));
+                graphics.drawPolyline(xs, ys, length + 1);
+            } catch (IOException ex) {
+                // the footprint was already loaded by the solver
+            }
+        }
+        
+        graphics.dispose();
+    }
+    
     /**
      * Creates a new, plain maze.
      */
     private void newMaze() {
+        stopWatchingMarkers();
+        clock.dispose();
         new MazeEditor(board, menu).show();
     }
     
@@ -200,7 +417,7 @@ public class MazeEditor {
     private void setBackground() {
         if (imageDialog.showOpenDialog(null) == ImageDialog.APPROVE_OPTION) {
             try {
-                maze.setBackground(new Texture(imageDialog.getSelectedFile(), Game.WIDTH, Game.HEIGHT));
+                maze.setBackground(new Texture(loadImage(imageDialog.getSelectedFile()), Game.WIDTH, Game.HEIGHT));
                 show();
             } catch (IOException ex) {
                 new MessageDialog(board, "The background image could not be loaded.").openOK();
@@ -215,7 +432,7 @@ public class MazeEditor {
     private void setMaze() {
         if (imageDialog.showOpenDialog(null) == ImageDialog.APPROVE_OPTION) {
             try {
-                maze.setMaze(new Picture(imageDialog.getSelectedFile()));
+                maze.setMaze(new Picture(loadImage(imageDialog.getSelectedFile())));
                 show();
             } catch (IOException ex) {
                 new MessageDialog(board, "The maze image could not be loaded.").openOK();
@@ -223,15 +440,54 @@ public class MazeEditor {
         }
     }
     
+    /**
+     * Loads an image file and converts it into the display format.
+     * @param file the image file
+     * @return the image
+     * @throws IOException when the image could not be loaded
+     */
+    private BufferedImage loadImage(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        
+        if (image == null)
+            throw new IOException("The image has an unknown format");
+        
+        return DisplayImages.prepare(image);
+    }
+    
+    /**
+     * Displays the generator settings and replaces the maze walls with
+     * a procedurally generated maze.
+     */
+    private void generate() {
+        MazeGenerator generator = generatorDialog.showDialog();
+        
+        if (generator != null) {
+            try {
+                CellGrid grid = generator.generateGrid();
+                maze.setMaze(new Picture(DisplayImages.prepare(generator.drawWalls(grid))));
+                maze.setEndpoints(generator.getStart(), generator.getEnd());
+                show();
+            } catch (IOException ex) {
+                new MessageDialog(board, "Could not load the game resources.").openOK();
+            } catch (IllegalArgumentException ex) {
+                new MessageDialog(board, ex.getMessage() + ".").openOK();
+            }
+        }
+    }
+    
     /**
      * Tests a newly created maze.
      */
     private void test() {
+        stopWatchingMarkers();
         board.clear();
         maze.setEndpoints(start.getRectangle().getLocation(), end.getRectangle().getLocation());
+        maze.setEndShown(true);
         
         try {
-            Player player = new Player(board, maze);
+            clock.clear();
+            Player player = new Player(board, maze, clock);
             maze.play(board, player, new Runnable() {
                 @Override
                 public void run() {
@@ -243,6 +499,7 @@ public class MazeEditor {
                     });
                 }
             });
+            clock.start();
             
             board.setKeyPressListener(new KeyListener() {
                 @Override
@@ -258,24 +515,75 @@ public class MazeEditor {
     
     /**
      * Saves the maze into a file.
+     * 
+     * A snapshot of the maze is saved in the background, so the editor stays
+     * responsive and can be used meanwhile. Only one save can run at a time.
      */
     private void save() {
+        if (saving)
+            return;
+        
         if (mazeDialog.showSaveDialog(null) == MazeDialog.APPROVE_OPTION) {
             maze.setEndpoints(start.getRectangle().getLocation(), end.getRectangle().getLocation());
             
-            try {
-                File file = mazeDialog.getSelectedFile();
-                
-                if (file.getName().toLowerCase().endsWith(".maze"))
-                    maze.save(file);
-                else
-                    maze.save(new File(file + ".maze"));
-            } catch (IOException ex) {
-                new MessageDialog(board, "The maze could not be saved.").openOK();
-            }
+            File file = mazeDialog.getSelectedFile();
+            final File target = file.getName().toLowerCase().endsWith(".maze") ? file : new File(file + ".maze");
+            final Maze savedMaze = maze.snapshot();
+            final MessageDialog progress = new MessageDialog(board, "Saving the maze...");
+            
+            saving = true;
+            progress.open();
+            
+            getSaver().submit(new Runnable() {
+                @Override
+                public void run() {
+                    String message = "The maze could not be saved.";
+                    
+                    try {
+                        savedMaze.save(target);
+                        message = "The maze was saved.";
+                    } catch (IOException ex) {
+                        // reported by the message
+                    } catch (RuntimeException ex) {
+                        Logger.getLogger(MazeEditor.class.getName()).log(Level.SEVERE, "The maze could not be saved", ex);
+                    } finally {
+                        final String result = message;
+                        
+                        EventQueue.invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                saving = false;
+                                progress.close();
+                                new MessageDialog(board, result).openOK();
+                            }
+                        });
+                    }
+                }
+            });
         }
     }
     
+    /**
+     * Returns the thread saving the mazes, creating it if necessary. The
+     * saving waits for images encoded in the worker pool, so it can not run
+     * in the pool itself.
+     * @return the executor
+     */
+    private static synchronized ExecutorService getSaver() {
+        if (saver == null) {
+            saver = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Maze saver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        
+        return saver;
+    }
+    
     /**
      * Displays a confirmation dialog and quits the editor if the user
      * chooses "Yes".
@@ -284,6 +592,8 @@ public class MazeEditor {
         new MessageDialog(board, "Do you really want to quit the editor?").openYesNo(new Runnable() {
             @Override
             public void run() {
+                stopWatchingMarkers();
+                clock.dispose();
                 menu.show();
             }
         }, null);
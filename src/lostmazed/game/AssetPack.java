@@ -0,0 +1,406 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.RandomAccessFile;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An archive of game resources with an index, read through memory mapping.
+ * 
+ * The archive starts with a header (the format tag, the version and the
+ * entry count), followed by the index: for each entry, the length of its
+ * name in bytes (2 bytes) and the name in UTF-8, its offset from the start of the archive and its
+ * length. The entry data follow, each one aligned to 8 bytes so that the
+ * wall masks in maze files can be read as 64-bit words.
+ * 
+ * The entries are returned as buffers sharing the mapped memory, so no
+ * entry is copied before it is decoded.
+ * @author Matúš Sulír
+ */
+public class AssetPack {
+    private static final int FORMAT_TAG = 0x4C4D504B;
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+    
+    private final ByteBuffer data;
+    private final Map<String, long[]> index = new HashMap<String, long[]>();
+    
+    /**
+     * Constructs the archive from its content.
+     * @param data the buffer containing the whole archive
+     * @throws IOException when the archive has an invalid format
+     */
+    public AssetPack(ByteBuffer data) throws IOException {
+        this.data = data.slice();
+        
+        try {
+            if (this.data.getInt(0) != FORMAT_TAG || this.data.getInt(4) != VERSION)
+                throw new InvalidObjectException("The asset pack has an invalid format");
+            
+            int count = this.data.getInt(8);
+            int position = 12;
+            
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[this.data.getShort(position) & 0xFFFF];
+                ByteBuffer nameBuffer = this.data.duplicate();
+                nameBuffer.position(position + 2);
+                nameBuffer.get(name);
+                position += 2 + name.length;
+                
+                long offset = this.data.getLong(position);
+                long length = this.data.getInt(position + 8) & 0xFFFFFFFFL;
+                position += 12;
+                
+                if (offset < 0 || offset + length > this.data.capacity())
+                    throw new InvalidObjectException("The asset pack entry is outside the pack");
+                
+                index.put(new String(name, "UTF-8"), new long[] {offset, length});
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            throw new InvalidObjectException("The asset pack index is damaged");
+        }
+    }
+    
+    /**
+     * Maps an archive stored in a file.
+     * @param file the file
+     * @return the archive
+     * @throws IOException when the archive could not be read
+     */
+    public static AssetPack map(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        
+        try {
+            FileChannel channel = input.getChannel();
+            return new AssetPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            input.close();
+        }
+    }
+    
+    /**
+     * Finds an archive on the class path.
+     * 
+     * An archive in a directory or stored uncompressed in a JAR file is
+     * mapped into memory. Otherwise, it is read into memory at once.
+     * @param name the resource name of the archive
+     * @return the archive or null if there is no such resource
+     * @throws IOException when the archive could not be read
+     */
+    public static AssetPack findResource(String name) throws IOException {
+        URL url = AssetPack.class.getClassLoader().getResource(name);
+        
+        if (url == null)
+            return null;
+        
+        try {
+            if (url.getProtocol().equals("file"))
+                return map(new File(url.toURI()));
+            
+            if (url.getProtocol().equals("jar")) {
+                URL jarUrl = ((JarURLConnection) url.openConnection()).getJarFileURL();
+                
+                if (jarUrl.getProtocol().equals("file")) {
+                    ByteBuffer entry = mapStoredEntry(new File(jarUrl.toURI()), name);
+                    
+                    if (entry != null)
+                        return new AssetPack(entry);
+                }
+            }
+        } catch (URISyntaxException ex) {
+            // not a local file, so read the stream
+        }
+        
+        InputStream stream = url.openStream();
+        
+        try {
+            return new AssetPack(ByteBuffer.wrap(readAll(stream)));
+        } finally {
+            stream.close();
+        }
+    }
+    
+    /**
+     * Returns the content of an entry.
+     * @param name the entry name
+     * @return the buffer sharing the archive memory, or null if there is no
+     * such entry
+     */
+    public ByteBuffer get(String name) {
+        long[] location = index.get(name);
+        
+        if (location == null)
+            return null;
+        
+        ByteBuffer entry = data.duplicate();
+        entry.limit((int) (location[0] + location[1]));
+        entry.position((int) location[0]);
+        
+        return entry.slice();
+    }
+    
+    /**
+     * Returns the names of all entries.
+     * @return the entry names
+     */
+    public String[] getNames() {
+        String[] names = index.keySet().toArray(new String[index.size()]);
+        Arrays.sort(names);
+        
+        return names;
+    }
+    
+    /**
+     * Writes all files in a directory and its subdirectories into an
+     * archive.
+     * @param directory the directory
+     * @param prefix the prefix of the entry names, e.g. "lostmazed/res/"; the
+     * rest of a name is the file path relative to the directory
+     * @param output the archive file
+     * @return the number of entries written
+     * @throws IOException when the files could not be read or the archive
+     * could not be written
+     */
+    public static int write(File directory, String prefix, File output) throws IOException {
+        List<String> names = new ArrayList<String>();
+        List<File> files = new ArrayList<File>();
+        collect(directory, prefix, names, files);
+        
+        List<byte[]> encodedNames = new ArrayList<byte[]>();
+        long position = 12;
+        
+        for (String name : names) {
+            byte[] encoded = name.getBytes("UTF-8");
+            
+            if (encoded.length > 0xFFFF)
+                throw new IOException("The resource name " + name + " is too long");
+            
+            encodedNames.add(encoded);
+            position += 2 + encoded.length + 12;
+        }
+        
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        
+        try {
+            stream.writeInt(FORMAT_TAG);
+            stream.writeInt(VERSION);
+            stream.writeInt(names.size());
+            
+            long offset = align(position);
+            
+            for (int i = 0; i < names.size(); i++) {
+                long length = files.get(i).length();
+                
+                if (length > Integer.MAX_VALUE)
+                    throw new IOException("The file " + files.get(i) + " is too large");
+                
+                stream.writeShort(encodedNames.get(i).length);
+                stream.write(encodedNames.get(i));
+                stream.writeLong(offset);
+                stream.writeInt((int) length);
+                offset = align(offset + length);
+            }
+            
+            for (File file : files) {
+                while (position < align(position)) {
+                    stream.write(0);
+                    position++;
+                }
+                
+                InputStream input = new FileInputStream(file);
+                
+                try {
+                    byte[] bytes = readAll(input);
+                    stream.write(bytes);
+                    position += bytes.length;
+                } finally {
+                    input.close();
+                }
+            }
+        } finally {
+            stream.close();
+        }
+        
+        return names.size();
+    }
+    
+    /**
+     * Adds all files in a directory and its subdirectories, sorted by name.
+     * @param directory the directory
+     * @param prefix the entry name prefix of the directory
+     * @param names the list to add the entry names to
+     * @param files the list to add the files to
+     * @throws IOException when the directory could not be read
+     */
+    private static void collect(File directory, String prefix, List<String> names, List<File> files)
+            throws IOException {
+        File[] children = directory.listFiles();
+        
+        if (children == null)
+            throw new IOException("The directory " + directory + " could not be read");
+        
+        Arrays.sort(children);
+        
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collect(child, prefix + child.getName() + "/", names, files);
+            } else {
+                names.add(prefix + child.getName());
+                files.add(child);
+            }
+        }
+    }
+    
+    /**
+     * Rounds an offset up to the entry alignment.
+     * @param offset the offset
+     * @return the aligned offset
+     */
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+    
+    /**
+     * Maps an entry of a ZIP (JAR) file if it is stored without compression.
+     * @param zip the ZIP file
+     * @param name the entry name
+     * @return the entry data or null if the entry was not found or is
+     * compressed
+     * @throws IOException when the file could not be read
+     */
+    private static ByteBuffer mapStoredEntry(File zip, String name) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(zip, "r");
+        
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            
+            // the end of central directory record is followed by a comment of at most 65535 bytes
+            int tailLength = (int) Math.min(size, 22 + 65535);
+            ByteBuffer tail = read(channel, size - tailLength, tailLength);
+            int end = tailLength - 22;
+            
+            while (end >= 0 && tail.getInt(end) != 0x06054B50)
+                end--;
+            
+            if (end < 0)
+                return null;
+            
+            int entries = tail.getShort(end + 10) & 0xFFFF;
+            long directoryLength = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            ByteBuffer directory = read(channel, directoryOffset, (int) directoryLength);
+            byte[] wanted = name.getBytes("UTF-8");
+            int position = 0;
+            
+            for (int i = 0; i < entries && directory.getInt(position) == 0x02014B50; i++) {
+                int method = directory.getShort(position + 10) & 0xFFFF;
+                long length = directory.getInt(position + 20) & 0xFFFFFFFFL;
+                int nameLength = directory.getShort(position + 28) & 0xFFFF;
+                int extraLength = directory.getShort(position + 30) & 0xFFFF;
+                int commentLength = directory.getShort(position + 32) & 0xFFFF;
+                long headerOffset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+                byte[] entryName = new byte[nameLength];
+                ByteBuffer nameBuffer = directory.duplicate();
+                nameBuffer.position(position + 46);
+                nameBuffer.get(entryName);
+                
+                if (Arrays.equals(entryName, wanted)) {
+                    if (method != 0)
+                        return null;
+                    
+                    ByteBuffer header = read(channel, headerOffset, 30);
+                    long dataOffset = headerOffset + 30 + (header.getShort(26) & 0xFFFF)
+                            + (header.getShort(28) & 0xFFFF);
+                    
+                    return channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, length);
+                }
+                
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+            
+            return null;
+        } finally {
+            input.close();
+        }
+    }
+    
+    /**
+     * Reads a part of a file into a little-endian buffer, as used by ZIP
+     * headers.
+     * @param channel the file channel
+     * @param offset the offset of the part
+     * @param length the length of the part
+     * @return the buffer
+     * @throws IOException when the part could not be read
+     */
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of the file");
+        }
+        
+        return buffer;
+    }
+    
+    /**
+     * Reads a stream until its end.
+     * @param stream the stream
+     * @return the bytes read
+     * @throws IOException when the stream could not be read
+     */
+    private static byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        
+        while ((count = stream.read(buffer)) != -1)
+            output.write(buffer, 0, count);
+        
+        return output.toByteArray();
+    }
+}
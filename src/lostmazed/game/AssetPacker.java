@@ -0,0 +1,60 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The build tool writing the game resources into an asset pack.
+ * 
+ * Usage: AssetPacker directory prefix output
+ * 
+ * All files in the directory are stored under names starting with the
+ * prefix, e.g. "lostmazed/res/".
+ * @author Matúš Sulír
+ */
+public class AssetPacker {
+    private AssetPacker() {
+    }
+    
+    /**
+     * Writes the asset pack.
+     * @param args the directory, the entry name prefix and the output file
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: AssetPacker directory prefix output");
+            System.exit(2);
+        }
+        
+        try {
+            int count = AssetPack.write(new File(args[0]), args[1], new File(args[2]));
+            System.out.println("Packed " + count + " resources into " + args[2]);
+        } catch (IOException ex) {
+            System.err.println("The asset pack could not be written: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.imageio.ImageIO;
+
+/**
+ * Access to the game resources.
+ * 
+ * The resources are read from the asset pack built together with the
+ * classes; the build does not copy them to the class path separately.
+ * 
+ * Decoded images are shared by the whole process, so a sprite is decoded
+ * once no matter how many objects display it.
+ * @author Matúš Sulír
+ */
+public class Assets {
+    /**
+     * The resource name of the asset pack.
+     */
+    public static final String PACK = "lostmazed/res.pack";
+    
+    private static AssetPack pack;
+    private static final Map<String, FutureTask<BufferedImage>> images
+            = new HashMap<String, FutureTask<BufferedImage>>();
+    private static int imageGeneration = DisplayImages.getGeneration();
+    
+    private Assets() {
+    }
+    
+    /**
+     * Returns the content of a resource.
+     * @param name the resource name, e.g. "lostmazed/res/part1.maze"
+     * @return the buffer sharing the asset pack memory
+     * @throws IOException when the pack or the resource does not exist or
+     * could not be read
+     */
+    public static ByteBuffer getBuffer(String name) throws IOException {
+        ByteBuffer buffer = getPack().get(name);
+        
+        if (buffer == null)
+            throw new FileNotFoundException("The resource " + name + " does not exist");
+        
+        return buffer;
+    }
+    
+    /**
+     * Returns a resource image in the display format, decoding it when
+     * requested for the first time.
+     * 
+     * Different images are decoded in parallel; a thread requesting an image
+     * which is being decoded by another thread waits for the result. The
+     * returned image is shared and must not be modified.
+     * @param name the resource name
+     * @return the image
+     * @throws IOException when the image could not be loaded
+     */
+    public static BufferedImage getImage(final String name) throws IOException {
+        FutureTask<BufferedImage> task;
+        boolean created = false;
+        
+        synchronized (images) {
+            if (imageGeneration != DisplayImages.getGeneration()) {
+                imageGeneration = DisplayImages.getGeneration();
+                images.clear();
+            }
+            
+            task = images.get(name);
+            
+            if (task == null) {
+                task = new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+                    @Override
+                    public BufferedImage call() throws IOException {
+                        return decodeImage(name);
+                    }
+                });
+                images.put(name, task);
+                created = true;
+            }
+        }
+        
+        if (created)
+            task.run();
+        
+        try {
+            return task.get();
+        } catch (ExecutionException ex) {
+            synchronized (images) {
+                if (images.get(name) == task)
+                    images.remove(name);
+            }
+            
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            
+            throw new IOException("The image " + name + " could not be decoded", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the image " + name);
+        }
+    }
+    
+    /**
+     * Decodes a resource image and converts it to the display format.
+     * @param name the resource name
+     * @return the image
+     * @throws IOException when the image could not be loaded
+     */
+    private static BufferedImage decodeImage(String name) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteBufferImageInputStream(getBuffer(name)));
+        
+        if (image == null)
+            throw new IOException("The image resource " + name + " has an unknown format");
+        
+        return DisplayImages.prepare(image);
+    }
+    
+    /**
+     * Returns the asset pack, opening it when called for the first time.
+     * @return the pack
+     * @throws IOException when the pack is not on the class path or could
+     * not be read
+     */
+    private static synchronized AssetPack getPack() throws IOException {
+        if (pack == null) {
+            pack = AssetPack.findResource(PACK);
+            
+            if (pack == null)
+                throw new FileNotFoundException("The asset pack " + PACK + " does not exist");
+        }
+        
+        return pack;
+    }
+}
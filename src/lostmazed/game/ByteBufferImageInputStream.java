@@ -0,0 +1,83 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An image input stream reading the remaining bytes of a buffer directly.
+ * 
+ * Unlike the streams created by ImageIO for an ordinary input stream, it
+ * does not copy the data into a cache file or memory.
+ * @author Matúš Sulír
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+    private final ByteBuffer buffer;
+    
+    /**
+     * Constructs the stream.
+     * @param buffer the buffer, read from its position to its limit
+     */
+    public ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+    
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        
+        if (streamPos >= buffer.limit())
+            return -1;
+        
+        return buffer.get((int) streamPos++) & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        
+        if (length == 0)
+            return 0;
+        
+        if (streamPos >= buffer.limit())
+            return -1;
+        
+        int count = (int) Math.min(length, buffer.limit() - streamPos);
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) streamPos);
+        view.get(bytes, offset, count);
+        streamPos += count;
+        
+        return count;
+    }
+    
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * The visible part of a maze which can be larger than the game board.
+ *
+ * The camera follows the player, keeping him in the middle of the board
+ * unless the border of the maze is near.
+ * @author Matúš Sulír
+ */
+public class Camera {
+    private final int worldWidth;
+    private final int worldHeight;
+    private int x;
+    private int y;
+
+    /**
+     * Constructs the camera showing the top left corner of the maze.
+     * @param worldWidth the maze width
+     * @param worldHeight the maze height
+     */
+    public Camera(int worldWidth, int worldHeight) {
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+    }
+
+    /**
+     * Moves the camera so that the specified point is in the middle of the
+     * board, if possible.
+     * @param centerX the x coordinate in the maze
+     * @param centerY the y coordinate in the maze
+     * @return true if the camera moved
+     */
+    public boolean follow(int centerX, int centerY) {
+        int newX = clamp(centerX - Game.WIDTH / 2, worldWidth - Game.WIDTH);
+        int newY = clamp(centerY - Game.HEIGHT / 2, worldHeight - Game.HEIGHT);
+
+        if (newX == x && newY == y)
+            return false;
+
+        x = newX;
+        y = newY;
+        return true;
+    }
+
+    /**
+     * Returns the x coordinate of the maze point shown in the top left corner
+     * of the board.
+     * @return the x coordinate
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate of the maze point shown in the top left corner
+     * of the board.
+     * @return the y coordinate
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the maze width.
+     * @return the width in pixels
+     */
+    public int getWorldWidth() {
+        return worldWidth;
+    }
+
+    /**
+     * Returns the maze height.
+     * @return the height in pixels
+     */
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * Limits the coordinate to the range from zero to the maximum.
+     * @param value the coordinate
+     * @param maximum the maximal coordinate, zero if it is negative
+     * @return the limited coordinate
+     */
+    private static int clamp(int value, int maximum) {
+        return Math.max(0, Math.min(value, Math.max(0, maximum)));
+    }
+}
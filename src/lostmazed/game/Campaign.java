@@ -0,0 +1,158 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Properties;
+
+/**
+ * The list of story parts, read from a manifest.
+ * 
+ * The manifest is a properties file with the number of parts
+ * (<code>parts</code>), the maze resource and the story text of each part
+ * (<code>part.N.maze</code>, <code>part.N.story</code>) and the story shown
+ * at the end (<code>ending.story</code>). Only the manifest is read here,
+ * the mazes are loaded by the game when they are needed.
+ * @author Matúš Sulír
+ */
+public class Campaign {
+    /**
+     * The resource name of the campaign shipped with the game.
+     */
+    public static final String DEFAULT_RESOURCE = "lostmazed/res/campaign.properties";
+    
+    private static Campaign defaultCampaign;
+    
+    private final String[] mazes;
+    private final String[] stories;
+    private final String ending;
+    
+    /**
+     * Constructs the campaign.
+     * @param mazes the maze resource names of the parts
+     * @param stories the story texts of the parts
+     * @param ending the story text shown after the last part
+     */
+    public Campaign(String[] mazes, String[] stories, String ending) {
+        if (mazes.length != stories.length)
+            throw new IllegalArgumentException("Each part must have a maze and a story");
+        
+        this.mazes = mazes.clone();
+        this.stories = stories.clone();
+        this.ending = ending;
+    }
+    
+    /**
+     * Returns the campaign shipped with the game, reading its manifest if
+     * necessary.
+     * @return the default campaign
+     * @throws IOException when the manifest could not be read
+     */
+    public static synchronized Campaign getDefault() throws IOException {
+        if (defaultCampaign == null)
+            defaultCampaign = loadResource(DEFAULT_RESOURCE);
+        
+        return defaultCampaign;
+    }
+    
+    /**
+     * Reads a campaign manifest from a class path resource.
+     * @param name the resource name of the manifest; the maze names in it
+     * are relative to its directory
+     * @return the campaign
+     * @throws IOException when the manifest could not be read
+     */
+    public static Campaign loadResource(String name) throws IOException {
+        Properties manifest = new Properties();
+        manifest.load(new StringReader(Charset.forName("UTF-8").decode(Assets.getBuffer(name)).toString()));
+        
+        String directory = name.substring(0, name.lastIndexOf('/') + 1);
+        int count;
+        
+        try {
+            count = Integer.parseInt(getProperty(manifest, "parts").trim());
+        } catch (NumberFormatException ex) {
+            throw new InvalidObjectException("The number of campaign parts is not a number");
+        }
+        
+        if (count < 1)
+            throw new InvalidObjectException("The number of campaign parts must be at least 1, not " + count);
+        
+        String[] mazes = new String[count];
+        String[] stories = new String[count];
+        
+        for (int i = 0; i < count; i++) {
+            mazes[i] = directory + getProperty(manifest, "part." + (i + 1) + ".maze").trim();
+            stories[i] = getProperty(manifest, "part." + (i + 1) + ".story");
+        }
+        
+        return new Campaign(mazes, stories, manifest.getProperty("ending.story", ""));
+    }
+    
+    /**
+     * Returns the number of parts.
+     * @return the part count
+     */
+    public int getPartCount() {
+        return mazes.length;
+    }
+    
+    /**
+     * Returns the resource name of the maze of a part.
+     * @param partNumber the part number, starting from 1
+     * @return the resource name
+     */
+    public String getMaze(int partNumber) {
+        return mazes[partNumber - 1];
+    }
+    
+    /**
+     * Returns the story text shown before a part.
+     * @param partNumber the part number, starting from 1; the number after
+     * the last part returns the ending story
+     * @return the story text
+     */
+    public String getStory(int partNumber) {
+        return (partNumber == mazes.length + 1) ? ending : stories[partNumber - 1];
+    }
+    
+    /**
+     * Returns a required property of the manifest.
+     * @param manifest the manifest
+     * @param key the property key
+     * @return the property value
+     * @throws InvalidObjectException when the property is missing
+     */
+    private static String getProperty(Properties manifest, String key) throws InvalidObjectException {
+        String value = manifest.getProperty(key);
+        
+        if (value == null)
+            throw new InvalidObjectException("The campaign manifest has no " + key);
+        
+        return value;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An image divided into square chunks which can be obtained separately.
+ * @author Matúš Sulír
+ */
+public interface ChunkSource {
+    /**
+     * Returns the image width.
+     * @return the width in pixels
+     */
+    int getWidth();
+
+    /**
+     * Returns the image height.
+     * @return the height in pixels
+     */
+    int getHeight();
+
+    /**
+     * Returns the size of one chunk.
+     * @return the chunk width and height in pixels
+     */
+    int getChunkSize();
+
+    /**
+     * Returns the image of the specified chunk.
+     *
+     * The chunks on the right and bottom border can be smaller than the
+     * chunk size.
+     * @param column the chunk column
+     * @param row the chunk row
+     * @return the chunk image or null if the chunk is empty
+     */
+    BufferedImage getChunk(int column, int row);
+
+    /**
+     * Hints that the specified chunk will be needed soon.
+     * @param column the chunk column
+     * @param row the chunk row
+     */
+    void prefetch(int column, int row);
+}
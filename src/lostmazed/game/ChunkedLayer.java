@@ -0,0 +1,146 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import soga2d.GraphicBoard;
+import soga2d.GraphicObject;
+import soga2d.objects.Picture;
+
+/**
+ * A layer of the maze (e.g. the background or the walls) displayed as
+ * separate chunks.
+ *
+ * Only the chunks visible through the camera are present on the board, so
+ * the drawing cost does not depend on the maze size. The chunks just outside
+ * the view are requested in advance.
+ * @author Matúš Sulír
+ */
+public class ChunkedLayer {
+    private final ChunkSource source;
+    private final Map<Long, GraphicObject> visibleChunks = new HashMap<Long, GraphicObject>();
+
+    /**
+     * Constructs the layer.
+     * @param source the source of the chunk images
+     */
+    public ChunkedLayer(ChunkSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Adds the newly visible chunks to the board, removes the hidden ones
+     * and moves the rest according to the camera.
+     * @param board the board
+     * @param camera the camera
+     * @return true if any chunk was added, so the stacking order of the
+     * objects above this layer must be restored
+     */
+    public boolean update(GraphicBoard board, Camera camera) {
+        int size = source.getChunkSize();
+        int firstColumn = camera.getX() / size;
+        int lastColumn = Math.min((camera.getX() + Game.WIDTH - 1) / size, (source.getWidth() - 1) / size);
+        int firstRow = camera.getY() / size;
+        int lastRow = Math.min((camera.getY() + Game.HEIGHT - 1) / size, (source.getHeight() - 1) / size);
+        boolean added = false;
+
+        Iterator<Map.Entry<Long, GraphicObject>> iterator = visibleChunks.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Long, GraphicObject> entry = iterator.next();
+            int column = (int) (entry.getKey() >> 32);
+            int row = (int) (long) entry.getKey();
+
+            if (column < firstColumn || column > lastColumn || row < firstRow || row > lastRow) {
+                board.removeObject(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Long key = getKey(column, row);
+                GraphicObject chunk = visibleChunks.get(key);
+
+                if (chunk == null) {
+                    BufferedImage image = source.getChunk(column, row);
+
+                    if (image == null)
+                        continue;
+
+                    chunk = new Picture(image);
+                    visibleChunks.put(key, chunk);
+                    board.addObject(chunk);
+                    added = true;
+                }
+
+                chunk.moveTo(column * size - camera.getX(), row * size - camera.getY());
+            }
+        }
+
+        for (int row = firstRow - 1; row <= lastRow + 1; row++) {
+            source.prefetch(firstColumn - 1, row);
+            source.prefetch(lastColumn + 1, row);
+        }
+
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            source.prefetch(column, firstRow - 1);
+            source.prefetch(column, lastRow + 1);
+        }
+
+        return added;
+    }
+
+    /**
+     * Removes all visible chunks from the board.
+     * @param board the board
+     */
+    public void removeFromBoard(GraphicBoard board) {
+        for (GraphicObject chunk : visibleChunks.values())
+            board.removeObject(chunk);
+        
+        visibleChunks.clear();
+    }
+
+    /**
+     * Brings all visible chunks in front of the other objects.
+     */
+    public void bringToForeground() {
+        for (GraphicObject chunk : visibleChunks.values())
+            chunk.bringToForeground();
+    }
+
+    /**
+     * Returns the key identifying the chunk.
+     * @param column the chunk column
+     * @param row the chunk row
+     * @return the key
+     */
+    private static Long getKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.LongBuffer;
+
+/**
+ * A packed bit mask of blocked positions.
+ *
+ * Each row is stored as a sequence of 64-bit words, the lowest bit of a word
+ * representing the leftmost position. Positions outside the mask are free.
+ * The words can live in a memory-mapped file, in which case the mask is
+ * read-only.
+ * @author Matúš Sulír
+ */
+public class CollisionMask implements Obstacles {
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final LongBuffer bits;
+
+    /**
+     * Constructs an empty mask.
+     * @param originX the x coordinate of the leftmost column
+     * @param originY the y coordinate of the topmost row
+     * @param width the number of columns
+     * @param height the number of rows
+     */
+    public CollisionMask(int originX, int originY, int width, int height) {
+        this(originX, originY, width, height, LongBuffer.allocate(getWordCount(width, height)));
+    }
+    
+    /**
+     * Constructs a mask using existing words.
+     * @param originX the x coordinate of the leftmost column
+     * @param originY the y coordinate of the topmost row
+     * @param width the number of columns
+     * @param height the number of rows
+     * @param bits the words, starting at the buffer's position
+     */
+    public CollisionMask(int originX, int originY, int width, int height, LongBuffer bits) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        wordsPerRow = (width + 63) >>> 6;
+        this.bits = bits.slice();
+        
+        if (this.bits.capacity() < wordsPerRow * height)
+            throw new IllegalArgumentException("The buffer is too small for the mask");
+    }
+    
+    /**
+     * Returns the number of words needed to store a mask.
+     * @param width the number of columns
+     * @param height the number of rows
+     * @return the number of 64-bit words
+     */
+    public static int getWordCount(int width, int height) {
+        return ((width + 63) >>> 6) * height;
+    }
+
+    /**
+     * Creates a mask where every non-transparent pixel of the image is blocked.
+     * @param image the image of the maze walls
+     * @return the mask with the origin in the top left corner of the image
+     */
+    public static CollisionMask fromAlpha(BufferedImage image) {
+        return fromAlpha(image, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Creates a mask of the given size where the image is repeated the same
+     * way as in a texture and every non-transparent pixel is blocked.
+     * @param image the image of the maze walls
+     * @param width the mask width
+     * @param height the mask height
+     * @return the mask with the origin in the top left corner
+     */
+    public static CollisionMask fromAlpha(BufferedImage image, int width, int height) {
+        CollisionMask mask = new CollisionMask(0, 0, width, height);
+        int imageWidth = image.getWidth();
+        int imageHeight = image.getHeight();
+        int[] row = new int[imageWidth];
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y % imageHeight, imageWidth, 1, row, 0, imageWidth);
+            int rowStart = y * mask.wordsPerRow;
+            long word = 0;
+
+            for (int x = 0; x < width; x++) {
+                if ((row[x % imageWidth] >>> 24) != 0)
+                    word |= 1L << x;
+
+                if ((x & 63) == 63 || x == width - 1) {
+                    mask.bits.put(rowStart + (x >>> 6), word);
+                    word = 0;
+                }
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns true if the position is blocked.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if blocked, false if free
+     */
+    @Override
+    public boolean isBlocked(int x, int y) {
+        int column = x - originX;
+        int row = y - originY;
+
+        if (column < 0 || row < 0 || column >= width || row >= height)
+            return false;
+
+        return (bits.get(row * wordsPerRow + (column >>> 6)) & (1L << column)) != 0;
+    }
+
+    /**
+     * Marks the position as blocked.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void setBlocked(int x, int y) {
+        int column = x - originX;
+        int row = y - originY;
+
+        if (column >= 0 && row >= 0 && column < width && row < height) {
+            int index = row * wordsPerRow + (column >>> 6);
+            bits.put(index, bits.get(index) | (1L << column));
+        }
+    }
+
+    /**
+     * Computes the mask of positions where a sprite with the given footprint
+     * (placed by its top left corner) would overlap any blocked position of
+     * this mask.
+     * @param footprint the sprite footprint
+     * @return the dilated mask
+     */
+    public CollisionMask dilate(Footprint footprint) {
+        if (footprint.size() == 0)
+            return new CollisionMask(originX, originY, 0, 0);
+
+        int minX = footprint.getMinX();
+        int maxX = footprint.getMaxX();
+        int minY = footprint.getMinY();
+        int maxY = footprint.getMaxY();
+        CollisionMask result = new CollisionMask(originX - maxX, originY - maxY,
+                width + maxX - minX, height + maxY - minY);
+
+        for (int i = 0; i < footprint.size(); i++) {
+            int shift = maxX - footprint.getX(i);
+            int rowShift = maxY - footprint.getY(i);
+
+            for (int row = 0; row < height; row++)
+                result.orRow(row + rowShift, this, row, shift);
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes all words of the mask, row by row.
+     * @param output the output
+     * @throws IOException when the mask could not be written
+     */
+    public void write(DataOutput output) throws IOException {
+        int count = wordsPerRow * height;
+
+        for (int i = 0; i < count; i++)
+            output.writeLong(bits.get(i));
+    }
+
+    /**
+     * Reads all words of the mask, row by row.
+     * @param input the input
+     * @throws IOException when the mask could not be read
+     */
+    public void read(DataInput input) throws IOException {
+        int count = wordsPerRow * height;
+
+        for (int i = 0; i < count; i++)
+            bits.put(i, input.readLong());
+    }
+
+    /**
+     * Copies all words of the mask, row by row, from a buffer.
+     * @param source the buffer, read starting at its position, which is not
+     *        changed
+     */
+    public void read(LongBuffer source) {
+        LongBuffer words = source.duplicate();
+        words.limit(words.position() + wordsPerRow * height);
+        
+        LongBuffer target = bits.duplicate();
+        target.clear();
+        target.put(words);
+    }
+
+    /**
+     * Returns the x coordinate of the leftmost column.
+     * @return the x coordinate
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    /**
+     * Returns the y coordinate of the topmost row.
+     * @return the y coordinate
+     */
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Combines a row of another mask, shifted right by the given number of
+     * bits, with a row of this mask.
+     * @param row the row of this mask
+     * @param source the other mask
+     * @param sourceRow the row of the other mask
+     * @param shift the number of bits to shift the source row by
+     */
+    private void orRow(int row, CollisionMask source, int sourceRow, int shift) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        int start = row * wordsPerRow;
+        int sourceStart = sourceRow * source.wordsPerRow;
+
+        for (int i = 0; i < source.wordsPerRow; i++) {
+            long word = source.bits.get(sourceStart + i);
+
+            if (word == 0)
+                continue;
+
+            int target = start + i + wordShift;
+            bits.put(target, bits.get(target) | (word << bitShift));
+
+            if (bitShift != 0 && i + wordShift + 1 < wordsPerRow)
+                bits.put(target + 1, bits.get(target + 1) | (word >>> (64 - bitShift)));
+        }
+    }
+}
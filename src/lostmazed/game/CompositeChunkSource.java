@@ -0,0 +1,183 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * The static layers of a maze (the background, the walls and optionally the
+ * ending point) composited into opaque chunks.
+ * 
+ * Drawing one opaque chunk is a simple copy, while drawing each layer
+ * separately requires blending. The layers can have different chunk sizes.
+ * @author Matúš Sulír
+ */
+public class CompositeChunkSource implements ChunkSource {
+    /**
+     * The color of the area not covered by any layer.
+     */
+    public static final Color EMPTY_COLOR = Color.BLACK;
+    
+    private static final Color END_BORDER = Color.RED;
+    private static final Color END_FILL = new Color(255, 0, 0, 100);
+    
+    private final ChunkSource[] layers;
+    private final Point end;
+    private final int width;
+    private final int height;
+    private final int chunkSize;
+    
+    /**
+     * Constructs the composite of the layers.
+     * @param layers the layers from the bottom one to the top one; null
+     * layers are skipped
+     * @param end the ending point to mark or null to mark nothing
+     * @param chunkSize the size of the composited chunks
+     */
+    public CompositeChunkSource(ChunkSource[] layers, Point end, int chunkSize) {
+        this.layers = layers.clone();
+        this.end = (end == null) ? null : new Point(end);
+        this.chunkSize = chunkSize;
+        
+        int maxWidth = 0;
+        int maxHeight = 0;
+        
+        for (ChunkSource layer : layers) {
+            if (layer != null) {
+                maxWidth = Math.max(maxWidth, layer.getWidth());
+                maxHeight = Math.max(maxHeight, layer.getHeight());
+            }
+        }
+        
+        width = maxWidth;
+        height = maxHeight;
+    }
+    
+    @Override
+    public int getWidth() {
+        return width;
+    }
+    
+    @Override
+    public int getHeight() {
+        return height;
+    }
+    
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    
+    @Override
+    public BufferedImage getChunk(int column, int row) {
+        int x = column * chunkSize;
+        int y = row * chunkSize;
+        
+        if (column < 0 || row < 0 || x >= width || y >= height)
+            return null;
+        
+        return render(x, y, Math.min(chunkSize, width - x), Math.min(chunkSize, height - y));
+    }
+    
+    @Override
+    public void prefetch(int column, int row) {
+        for (ChunkSource layer : layers) {
+            if (layer == null)
+                continue;
+            
+            int size = layer.getChunkSize();
+            int firstColumn = column * chunkSize / size;
+            int lastColumn = ((column + 1) * chunkSize - 1) / size;
+            int firstRow = row * chunkSize / size;
+            int lastRow = ((row + 1) * chunkSize - 1) / size;
+            
+            for (int layerRow = firstRow; layerRow <= lastRow; layerRow++) {
+                for (int layerColumn = firstColumn; layerColumn <= lastColumn; layerColumn++)
+                    layer.prefetch(layerColumn, layerRow);
+            }
+        }
+    }
+    
+    /**
+     * Composites a rectangle of all layers into one opaque image.
+     * @param x the x coordinate of the rectangle
+     * @param y the y coordinate of the rectangle
+     * @param regionWidth the width of the rectangle
+     * @param regionHeight the height of the rectangle
+     * @return the image in the display format
+     */
+    public BufferedImage render(int x, int y, int regionWidth, int regionHeight) {
+        BufferedImage image = DisplayImages.create(regionWidth, regionHeight, Transparency.OPAQUE);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(EMPTY_COLOR);
+        graphics.fillRect(0, 0, regionWidth, regionHeight);
+        
+        for (ChunkSource layer : layers) {
+            if (layer != null)
+                drawLayer(graphics, layer, x, y, regionWidth, regionHeight);
+        }
+        
+        if (end != null) {
+            graphics.setColor(END_FILL);
+            graphics.fillRect((int) end.getX() - x, (int) end.getY() - y, Maze.END_SIZE, Maze.END_SIZE);
+            graphics.setColor(END_BORDER);
+            graphics.drawRect((int) end.getX() - x, (int) end.getY() - y, Maze.END_SIZE - 1, Maze.END_SIZE - 1);
+        }
+        
+        graphics.dispose();
+        return image;
+    }
+    
+    /**
+     * Draws all chunks of a layer which overlap the rectangle.
+     * @param graphics the graphics of the rectangle image
+     * @param layer the layer
+     * @param x the x coordinate of the rectangle
+     * @param y the y coordinate of the rectangle
+     * @param regionWidth the width of the rectangle
+     * @param regionHeight the height of the rectangle
+     */
+    private static void drawLayer(Graphics2D graphics, ChunkSource layer, int x, int y,
+            int regionWidth, int regionHeight) {
+        int size = layer.getChunkSize();
+        int lastColumn = Math.min(x + regionWidth, layer.getWidth()) - 1;
+        int lastRow = Math.min(y + regionHeight, layer.getHeight()) - 1;
+        
+        if (lastColumn < x || lastRow < y)
+            return;
+        
+        for (int row = y / size; row <= lastRow / size; row++) {
+            for (int column = x / size; column <= lastColumn / size; column++) {
+                BufferedImage chunk = layer.getChunk(column, row);
+                
+                if (chunk != null)
+                    graphics.drawImage(chunk, column * size - x, row * size - y, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Rectangle;
+
+/**
+ * The part of the board which changed during one frame and must be
+ * repainted.
+ *
+ * The rectangles are joined into their bounding box, which is what Swing
+ * repaints anyway.
+ * @author Matúš Sulír
+ */
+public class DirtyRegion {
+    private Rectangle bounds;
+    private Rectangle changedImages;
+    private boolean all;
+
+    /**
+     * Adds a rectangle to the region.
+     * @param x the x coordinate on the board
+     * @param y the y coordinate on the board
+     * @param width the width
+     * @param height the height
+     */
+    public void add(int x, int y, int width, int height) {
+        if (all || width <= 0 || height <= 0)
+            return;
+
+        if (bounds == null)
+            bounds = new Rectangle(x, y, width, height);
+        else
+            bounds.add(new Rectangle(x, y, width, height));
+    }
+
+    /**
+     * Adds a rectangle where an image was changed in place. The board does not
+     * know about such a change, so the rectangle is repainted even if the
+     * board requests no repaint at all.
+     * @param x the x coordinate on the board
+     * @param y the y coordinate on the board
+     * @param width the width
+     * @param height the height
+     */
+    public void addChangedImage(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0)
+            return;
+
+        add(x, y, width, height);
+
+        if (changedImages == null)
+            changedImages = new Rectangle(x, y, width, height);
+        else
+            changedImages.add(new Rectangle(x, y, width, height));
+    }
+
+    /**
+     * Marks the whole board as changed, e.g. when the view scrolls.
+     */
+    public void addAll() {
+        all = true;
+        bounds = null;
+    }
+
+    /**
+     * Returns true if the whole board changed.
+     * @return true if everything must be repainted
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * Returns true if nothing changed.
+     * @return true if nothing must be repainted
+     */
+    public boolean isEmpty() {
+        return !all && bounds == null;
+    }
+
+    /**
+     * Returns the bounding box of the changed rectangles.
+     * @return the bounds, or null if the region is empty or covers the whole
+     * board
+     */
+    public Rectangle getBounds() {
+        return (bounds == null) ? null : new Rectangle(bounds);
+    }
+
+    /**
+     * Returns the bounding box of the rectangles where images were changed in
+     * place.
+     * @return the bounds, or null if no image was changed
+     */
+    public Rectangle getChangedImages() {
+        return (changedImages == null) ? null : new Rectangle(changedImages);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Rectangle;
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import soga2d.GraphicPanel;
+
+/**
+ * A repaint manager which restricts the repaints of the game board to the
+ * region changed by the game.
+ *
+ * The board requests a repaint of the whole panel whenever it changes. While
+ * a frame is being displayed, these requests are collected and, at the end of
+ * the frame, only their intersection with the known dirty region is passed
+ * to Swing. Requests outside a frame or from other threads are not changed,
+ * so anything the game does not track is still painted completely. Images
+ * changed in place, which the board does not notice, are repainted even
+ * without a request.
+ * @author Matúš Sulír
+ */
+public class DirtyRepaintManager extends RepaintManager {
+    private Thread frameThread;
+    private JComponent panel;
+    private JComponent requestedComponent;
+    private Rectangle requested;
+
+    /**
+     * Replaces the current repaint manager by this one.
+     */
+    public static void install() {
+        if (!(RepaintManager.currentManager(null) instanceof DirtyRepaintManager))
+            RepaintManager.setCurrentManager(new DirtyRepaintManager());
+    }
+
+    /**
+     * Starts collecting the repaints of the board requested by the current
+     * thread.
+     */
+    public static void beginFrame() {
+        RepaintManager manager = RepaintManager.currentManager(null);
+
+        if (manager instanceof DirtyRepaintManager)
+            ((DirtyRepaintManager) manager).begin();
+    }
+
+    /**
+     * Requests a repaint of the collected board areas which lie in the dirty
+     * region.
+     * @param dirty the region changed during the frame
+     */
+    public static void endFrame(DirtyRegion dirty) {
+        RepaintManager manager = RepaintManager.currentManager(null);
+
+        if (manager instanceof DirtyRepaintManager)
+            ((DirtyRepaintManager) manager).end(dirty);
+    }
+
+    @Override
+    public void addDirtyRegion(JComponent component, int x, int y, int width, int height) {
+        synchronized (this) {
+            if (component instanceof GraphicPanel)
+                panel = component;
+
+            if (Thread.currentThread() == frameThread && component instanceof GraphicPanel
+                    && (requestedComponent == null || requestedComponent == component)) {
+                Rectangle rectangle = new Rectangle(x, y, width, height);
+                requestedComponent = component;
+
+                if (requested == null)
+                    requested = rectangle;
+                else
+                    requested.add(rectangle);
+
+                return;
+            }
+        }
+
+        super.addDirtyRegion(component, x, y, width, height);
+    }
+
+    /**
+     * Paints the requested regions and records the startup times waiting
+     * for a paint.
+     */
+    @Override
+    public void paintDirtyRegions() {
+        super.paintDirtyRegions();
+        StartupTimes.painted();
+    }
+
+    private synchronized void begin() {
+        frameThread = Thread.currentThread();
+        requestedComponent = null;
+        requested = null;
+    }
+
+    private void end(DirtyRegion dirty) {
+        JComponent component;
+        Rectangle area;
+
+        synchronized (this) {
+            component = (requestedComponent != null) ? requestedComponent : panel;
+            area = requested;
+            frameThread = null;
+            requestedComponent = null;
+            requested = null;
+        }
+
+        if (area != null && !dirty.isEmpty() && !dirty.isAll())
+            area = area.intersection(dirty.getBounds());
+
+        Rectangle changedImages = dirty.getChangedImages();
+
+        if (changedImages != null)
+            area = (area == null || area.isEmpty()) ? changedImages : area.union(changedImages);
+        else if (dirty.isEmpty())
+            return;
+
+        if (component != null && area != null && !area.isEmpty())
+            super.addDirtyRegion(component, area.x, area.y, area.width, area.height);
+    }
+}
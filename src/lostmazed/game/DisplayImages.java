@@ -0,0 +1,162 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Converts images into the format of the display, so that Java2D can draw
+ * them by a simple copy and cache them in the video memory.
+ * 
+ * Images decoded by ImageIO usually have a custom or byte-interleaved
+ * format, which is drawn pixel by pixel on every frame. The converted images
+ * are compatible with the configuration of the game window and have the
+ * lowest transparency level their pixels allow. When the window moves to
+ * a display with a different configuration, the generation number changes
+ * and the images should be converted again.
+ * 
+ * In a headless environment, the images are left as they are.
+ * @author Matúš Sulír
+ */
+public class DisplayImages {
+    private static GraphicsConfiguration configuration;
+    private static volatile int generation;
+    
+    private DisplayImages() {
+    }
+    
+    /**
+     * Sets the configuration of the display where the game is shown.
+     * @param newConfiguration the graphics configuration of the game panel
+     * (null is ignored)
+     */
+    public static synchronized void setConfiguration(GraphicsConfiguration newConfiguration) {
+        if (newConfiguration != null && !newConfiguration.equals(configuration)) {
+            configuration = newConfiguration;
+            generation++;
+        }
+    }
+    
+    /**
+     * Returns the number which changes every time the display configuration
+     * changes.
+     * @return the generation number
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Returns an image in the display format with the same content.
+     * @param image the image or null
+     * @return the same image if it already has the display format, a
+     * converted copy otherwise; null if the image is null
+     */
+    public static BufferedImage prepare(BufferedImage image) {
+        GraphicsConfiguration target = getConfiguration();
+        
+        if (image == null || target == null)
+            return image;
+        
+        if (image.getType() != BufferedImage.TYPE_CUSTOM
+                && image.getColorModel().equals(target.getColorModel(image.getTransparency())))
+            return image;
+        
+        BufferedImage result = target.createCompatibleImage(image.getWidth(), image.getHeight(),
+                getTransparency(image));
+        Graphics2D graphics = result.createGraphics();
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        
+        return result;
+    }
+    
+    /**
+     * Creates an empty image in the display format.
+     * @param width the width
+     * @param height the height
+     * @param transparency the transparency, as defined in {@link Transparency}
+     * @return the image, fully transparent if it supports transparency
+     */
+    public static BufferedImage create(int width, int height, int transparency) {
+        GraphicsConfiguration target = getConfiguration();
+        
+        if (target != null)
+            return target.createCompatibleImage(width, height, transparency);
+        
+        int type = (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(width, height, type);
+    }
+    
+    /**
+     * Finds the lowest transparency level needed to display the image
+     * correctly, checking the actual alpha values of its pixels.
+     * @param image the image
+     * @return the transparency, as defined in {@link Transparency}
+     */
+    static int getTransparency(BufferedImage image) {
+        if (image.getTransparency() == Transparency.OPAQUE)
+            return Transparency.OPAQUE;
+        
+        int width = image.getWidth();
+        int[] row = new int[width];
+        boolean opaque = true;
+        
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            
+            for (int x = 0; x < width; x++) {
+                int alpha = row[x] >>> 24;
+                
+                if (alpha != 255) {
+                    if (alpha != 0)
+                        return Transparency.TRANSLUCENT;
+                    
+                    opaque = false;
+                }
+            }
+        }
+        
+        return opaque ? Transparency.OPAQUE : Transparency.BITMASK;
+    }
+    
+    /**
+     * Returns the configuration to convert the images for.
+     * @return the configuration of the game panel or of the default screen,
+     * null in a headless environment
+     */
+    private static synchronized GraphicsConfiguration getConfiguration() {
+        if (configuration == null && !GraphicsEnvironment.isHeadless())
+            configuration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+        
+        return configuration;
+    }
+}
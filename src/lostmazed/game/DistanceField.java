@@ -0,0 +1,186 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * The distance from every position of a collision mask to the nearest
+ * blocked position.
+ *
+ * A sprite can move from a position to any other position closer than this
+ * distance without colliding, so long moves need only one query.
+ * @author Matúš Sulír
+ */
+public class DistanceField {
+    private static final double INFINITY = 1e20;
+
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+    private final short[] freeSteps;
+
+    /**
+     * Computes the exact Euclidean distance transform of the mask.
+     * @param mask the collision mask
+     */
+    public DistanceField(CollisionMask mask) {
+        originX = mask.getOriginX();
+        originY = mask.getOriginY();
+        width = mask.getWidth();
+        height = mask.getHeight();
+        freeSteps = new short[width * height];
+
+        double[] squared = new double[width * height];
+        computeColumns(mask, squared);
+        computeRows(squared);
+
+        for (int i = 0; i < squared.length; i++) {
+            double steps = Math.ceil(Math.sqrt(squared[i])) - 1;
+            freeSteps[i] = (short) Math.max(0, Math.min(Short.MAX_VALUE, steps));
+        }
+    }
+
+    /**
+     * Returns the number of whole pixels the sprite can move from the given
+     * position in any direction without reaching a blocked position.
+     *
+     * Zero means a blocked position may be one pixel away, so the caller
+     * must check the next position in the moving direction itself.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the number of free steps
+     */
+    public int getFreeSteps(int x, int y) {
+        int column = x - originX;
+        int row = y - originY;
+
+        if (column >= 0 && row >= 0 && column < width && row < height)
+            return freeSteps[row * width + column];
+
+        // outside, the nearest blocked position is at least as far as the mask border
+        long dx = Math.max(0, Math.max(-column, column - width + 1));
+        long dy = Math.max(0, Math.max(-row, row - height + 1));
+        double steps = Math.ceil(Math.sqrt(dx * dx + dy * dy)) - 1;
+
+        return (int) Math.min(Short.MAX_VALUE, steps);
+    }
+
+    /**
+     * Computes the squared vertical distances to the nearest blocked position
+     * in each column.
+     * @param mask the collision mask
+     * @param squared the output array
+     */
+    private void computeColumns(CollisionMask mask, double[] squared) {
+        for (int column = 0; column < width; column++) {
+            int x = originX + column;
+            int lastBlocked = -1;
+
+            for (int row = 0; row < height; row++) {
+                if (mask.isBlocked(x, originY + row))
+                    lastBlocked = row;
+
+                squared[row * width + column] = (lastBlocked < 0) ? INFINITY : square(row - lastBlocked);
+            }
+
+            lastBlocked = -1;
+
+            for (int row = height - 1; row >= 0; row--) {
+                if (mask.isBlocked(x, originY + row))
+                    lastBlocked = row;
+
+                if (lastBlocked >= 0) {
+                    int index = row * width + column;
+                    squared[index] = Math.min(squared[index], square(lastBlocked - row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Combines the column distances in each row using the lower envelope of
+     * parabolas (Felzenszwalb and Huttenlocher).
+     * @param squared the squared column distances, replaced by the result
+     */
+    private void computeRows(double[] squared) {
+        double[] values = new double[width];
+        int[] vertices = new int[width];
+        double[] boundaries = new double[width + 1];
+
+        for (int row = 0; row < height; row++) {
+            int start = row * width;
+            System.arraycopy(squared, start, values, 0, width);
+
+            int count = 0;
+            vertices[0] = 0;
+            boundaries[0] = -INFINITY;
+            boundaries[1] = INFINITY;
+
+            for (int q = 1; q < width; q++) {
+                double intersection = intersect(values, vertices[count], q);
+
+                while (intersection <= boundaries[count]) {
+                    count--;
+                    intersection = intersect(values, vertices[count], q);
+                }
+
+                count++;
+                vertices[count] = q;
+                boundaries[count] = intersection;
+                boundaries[count + 1] = INFINITY;
+            }
+
+            int k = 0;
+
+            for (int q = 0; q < width; q++) {
+                while (boundaries[k + 1] < q)
+                    k++;
+
+                int vertex = vertices[k];
+                squared[start + q] = square(q - vertex) + values[vertex];
+            }
+        }
+    }
+
+    /**
+     * Returns the x coordinate where the parabolas rooted at two positions
+     * intersect.
+     * @param values the parabola heights
+     * @param first the first position
+     * @param second the second position
+     * @return the intersection coordinate
+     */
+    private static double intersect(double[] values, int first, int second) {
+        return ((values[second] + square(second)) - (values[first] + square(first))) / (2.0 * (second - first));
+    }
+
+    /**
+     * Returns the square of a number.
+     * @param value the number
+     * @return the square as a double
+     */
+    private static double square(int value) {
+        return (double) value * value;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * The grid of tiles hiding the parts of the maze the player has not visited
+ * yet, without any graphics.
+ *
+ * When the player comes near a tile, the tile is uncovered and stays
+ * uncovered.
+ * @author Matúš Sulír
+ */
+public class FogGrid {
+    /**
+     * The size of one square tile.
+     */
+    public static final int TILE_SIZE = 25;
+
+    /**
+     * When the distance from the center of a tile to the center of the player
+     * becomes lower than this, the tile is uncovered.
+     */
+    public static final int UNCOVER_DISTANCE = 50;
+
+    private final int columns;
+    private final int rows;
+    private final boolean[] explored;
+    private int exploredCount;
+
+    /**
+     * Constructs the grid covering the whole maze.
+     * @param worldWidth the maze width
+     * @param worldHeight the maze height
+     */
+    public FogGrid(int worldWidth, int worldHeight) {
+        columns = (worldWidth + TILE_SIZE - 1) / TILE_SIZE;
+        rows = (worldHeight + TILE_SIZE - 1) / TILE_SIZE;
+        explored = new boolean[columns * rows];
+    }
+
+    /**
+     * Uncovers all tiles near the specified point.
+     *
+     * Only the tiles within the uncover distance are examined.
+     * @param centerX the x coordinate of the player's center in the maze
+     * @param centerY the y coordinate of the player's center in the maze
+     * @return true if at least one tile was uncovered
+     */
+    public boolean reveal(int centerX, int centerY) {
+        int firstColumn = Math.max(0, (centerX - UNCOVER_DISTANCE) / TILE_SIZE);
+        int lastColumn = Math.min(columns - 1, (centerX + UNCOVER_DISTANCE) / TILE_SIZE);
+        int firstRow = Math.max(0, (centerY - UNCOVER_DISTANCE) / TILE_SIZE);
+        int lastRow = Math.min(rows - 1, (centerY + UNCOVER_DISTANCE) / TILE_SIZE);
+        boolean revealed = false;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * columns + column;
+
+                if (!explored[index] && isNear(column, row, centerX, centerY)) {
+                    uncover(index);
+                    revealed = true;
+                }
+            }
+        }
+
+        return revealed;
+    }
+
+    /**
+     * Uncovers the tile with the given index, e.g. one uncovered by another
+     * grid of the same size.
+     * @param index the tile index, which is row * columns + column
+     */
+    public void uncover(int index) {
+        if (!explored[index]) {
+            explored[index] = true;
+            exploredCount++;
+            onRevealed(index % columns, index / columns);
+        }
+    }
+
+    /**
+     * Returns true if the tile was already uncovered.
+     * @param column the tile column
+     * @param row the tile row
+     * @return true if the tile is explored
+     */
+    public boolean isExplored(int column, int row) {
+        return explored[row * columns + column];
+    }
+
+    /**
+     * Returns the number of uncovered tiles.
+     * @return the tile count
+     */
+    public int getExploredCount() {
+        return exploredCount;
+    }
+
+    /**
+     * Returns the number of tile columns.
+     * @return the column count
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of tile rows.
+     * @return the row count
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Called for each newly uncovered tile. Does nothing by default.
+     * @param column the tile column
+     * @param row the tile row
+     */
+    protected void onRevealed(int column, int row) {
+    }
+
+    /**
+     * Returns true if the tile's center is within the uncover distance.
+     * @param column the tile column
+     * @param row the tile row
+     * @param centerX the x coordinate of the player's center
+     * @param centerY the y coordinate of the player's center
+     * @return true if the tile should be uncovered
+     */
+    private boolean isNear(int column, int row, int centerX, int centerY) {
+        // doubled coordinates avoid fractions for tiles with an odd size
+        long dx = 2L * centerX - (2L * column * TILE_SIZE + TILE_SIZE);
+        long dy = 2L * centerY - (2L * row * TILE_SIZE + TILE_SIZE);
+
+        return dx * dx + dy * dy < 4L * UNCOVER_DISTANCE * UNCOVER_DISTANCE;
+    }
+}
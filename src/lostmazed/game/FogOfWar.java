@@ -0,0 +1,121 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import soga2d.GraphicObject;
+import soga2d.objects.Picture;
+
+/**
+ * Black tiles (sometimes called "fog of war") hiding the parts of the maze
+ * the player has not visited yet.
+ *
+ * The tiles are drawn into one overlay image covering the game board. When
+ * the player comes near a tile, only that tile is cleared from the image.
+ * The whole image is redrawn only when the camera moves.
+ * @author Matúš Sulír
+ */
+public class FogOfWar extends FogGrid {
+    private final BufferedImage overlay;
+    private final Picture graphics;
+    private int viewX;
+    private int viewY;
+
+    /**
+     * Constructs the fog covering the whole maze.
+     * @param worldWidth the maze width
+     * @param worldHeight the maze height
+     */
+    public FogOfWar(int worldWidth, int worldHeight) {
+        super(worldWidth, worldHeight);
+
+        overlay = DisplayImages.create(Game.WIDTH, Game.HEIGHT, Transparency.TRANSLUCENT);
+        redraw();
+
+        graphics = new Picture(overlay);
+    }
+
+    /**
+     * Returns the overlay object to add to the board.
+     * @return the graphical object
+     */
+    public GraphicObject getGraphics() {
+        return graphics;
+    }
+
+    /**
+     * Sets the maze point shown in the top left corner of the board.
+     * @param x the x coordinate in the maze
+     * @param y the y coordinate in the maze
+     */
+    public void setView(int x, int y) {
+        if (x != viewX || y != viewY) {
+            viewX = x;
+            viewY = y;
+            redraw();
+        }
+    }
+
+    /**
+     * Clears the uncovered tile from the overlay.
+     * @param column the tile column
+     * @param row the tile row
+     */
+    @Override
+    protected void onRevealed(int column, int row) {
+        Graphics2D graphics2D = overlay.createGraphics();
+        graphics2D.setComposite(AlphaComposite.Clear);
+        graphics2D.fillRect(column * TILE_SIZE - viewX, row * TILE_SIZE - viewY, TILE_SIZE, TILE_SIZE);
+        graphics2D.dispose();
+    }
+
+    /**
+     * Draws the whole overlay for the current view.
+     */
+    private void redraw() {
+        Graphics2D graphics2D = overlay.createGraphics();
+        graphics2D.setComposite(AlphaComposite.Src);
+        graphics2D.setColor(Color.BLACK);
+        graphics2D.fillRect(0, 0, overlay.getWidth(), overlay.getHeight());
+        graphics2D.setComposite(AlphaComposite.Clear);
+
+        int firstColumn = viewX / TILE_SIZE;
+        int lastColumn = Math.min(getColumns() - 1, (viewX + Game.WIDTH - 1) / TILE_SIZE);
+        int firstRow = viewY / TILE_SIZE;
+        int lastRow = Math.min(getRows() - 1, (viewY + Game.HEIGHT - 1) / TILE_SIZE);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if (isExplored(column, row))
+                    graphics2D.fillRect(column * TILE_SIZE - viewX, row * TILE_SIZE - viewY, TILE_SIZE, TILE_SIZE);
+            }
+        }
+
+        graphics2D.dispose();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The set of pixels occupied by a sprite, relative to its top left corner.
+ *
+ * Because the player sprite is rotated while moving, the footprint contains
+ * the union of the opaque pixels in all eight moving directions.
+ * @author Matúš Sulír
+ */
+public class Footprint {
+    private final int[] xOffsets;
+    private final int[] yOffsets;
+    private final int width;
+    private final int height;
+    private int minX, maxX, minY, maxY;
+
+    /**
+     * Computes the footprint of a sprite image.
+     * @param image the sprite image
+     */
+    public Footprint(BufferedImage image) {
+        width = image.getWidth();
+        height = image.getHeight();
+
+        boolean[] occupied = new boolean[width * height];
+        int[] row = new int[width];
+        int count = 0;
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+
+            for (int x = 0; x < width; x++) {
+                if ((row[x] >>> 24) != 0) {
+                    occupied[y * width + x] = true;
+                    count++;
+                }
+            }
+        }
+
+        // each rotated pixel can land on a different place, so reserve space for all of them
+        int[] xs = new int[count * 8];
+        int[] ys = new int[count * 8];
+        int size = 0;
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+
+        for (int direction = 0; direction < 8; direction++) {
+            double angle = Math.toRadians(direction * 45);
+            double sin = Math.sin(angle);
+            double cos = Math.cos(angle);
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (occupied[y * width + x]) {
+                        double dx = x + 0.5 - centerX;
+                        double dy = y + 0.5 - centerY;
+
+                        xs[size] = (int) Math.floor(centerX + dx * cos - dy * sin);
+                        ys[size] = (int) Math.floor(centerY + dx * sin + dy * cos);
+                        size++;
+                    }
+                }
+            }
+        }
+
+        int[][] unique = removeDuplicates(xs, ys, size);
+        xOffsets = unique[0];
+        yOffsets = unique[1];
+    }
+
+    /**
+     * Returns the number of occupied pixels.
+     * @return the pixel count
+     */
+    public int size() {
+        return xOffsets.length;
+    }
+
+    /**
+     * Returns the x offset of the specified occupied pixel.
+     * @param index the pixel index
+     * @return the x offset from the sprite's left border
+     */
+    public int getX(int index) {
+        return xOffsets[index];
+    }
+
+    /**
+     * Returns the y offset of the specified occupied pixel.
+     * @param index the pixel index
+     * @return the y offset from the sprite's top border
+     */
+    public int getY(int index) {
+        return yOffsets[index];
+    }
+
+    /**
+     * Returns the width of the unrotated sprite.
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the unrotated sprite.
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the minimal x offset of all occupied pixels.
+     * @return the minimal x offset
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Returns the maximal x offset of all occupied pixels.
+     * @return the maximal x offset
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Returns the minimal y offset of all occupied pixels.
+     * @return the minimal y offset
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Returns the maximal y offset of all occupied pixels.
+     * @return the maximal y offset
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Removes duplicate points and computes the bounds of the rest.
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @param size the number of points
+     * @return an array containing the unique x and y coordinates
+     */
+    private int[][] removeDuplicates(int[] xs, int[] ys, int size) {
+        if (size == 0)
+            return new int[][] {new int[0], new int[0]};
+
+        minX = maxX = xs[0];
+        minY = maxY = ys[0];
+
+        for (int i = 1; i < size; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        int boxWidth = maxX - minX + 1;
+        boolean[] seen = new boolean[boxWidth * (maxY - minY + 1)];
+        int[] uniqueX = new int[size];
+        int[] uniqueY = new int[size];
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            int index = (ys[i] - minY) * boxWidth + (xs[i] - minX);
+
+            if (!seen[index]) {
+                seen[index] = true;
+                uniqueX[count] = xs[i];
+                uniqueY[count] = ys[i];
+                count++;
+            }
+        }
+
+        int[] resultX = new int[count];
+        int[] resultY = new int[count];
+        System.arraycopy(uniqueX, 0, resultX, 0, count);
+        System.arraycopy(uniqueY, 0, resultY, 0, count);
+
+        return new int[][] {resultX, resultY};
+    }
+}
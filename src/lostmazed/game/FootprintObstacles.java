@@ -0,0 +1,57 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * Obstacles computed by testing every pixel of a footprint against the wall
+ * mask.
+ *
+ * This is slower per query than a dilated mask, but needs no additional
+ * memory, so it is used for very large mazes.
+ * @author Matúš Sulír
+ */
+public class FootprintObstacles implements Obstacles {
+    private final CollisionMask walls;
+    private final Footprint footprint;
+
+    /**
+     * Constructs the obstacles.
+     * @param walls the mask of all wall pixels
+     * @param footprint the sprite footprint
+     */
+    public FootprintObstacles(CollisionMask walls, Footprint footprint) {
+        this.walls = walls;
+        this.footprint = footprint;
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        for (int i = 0; i < footprint.size(); i++) {
+            if (walls.isBlocked(x + footprint.getX(i), y + footprint.getY(i)))
+                return true;
+        }
+
+        return false;
+    }
+}
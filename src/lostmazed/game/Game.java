@@ -25,6 +25,16 @@ package lostmazed.game;
 
 import java.awt.event.KeyEvent;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import lostmazed.MainMenu;
 import lostmazed.MessageDialog;
 import soga2d.GraphicBoard;
@@ -46,29 +56,62 @@ public class Game {
      */
     public static final int HEIGHT = 600;
     
+    /**
+     * The maximal number of parts loaded in advance, so the memory used does
+     * not depend on the campaign length.
+     */
+    public static final int PRELOADED_PARTS = 2;
+    
+    private static ExecutorService loader;
+    
     private GraphicBoard board;
     private Maze maze;
     private Player player;
     private MainMenu menu;
+    private Campaign campaign;
+    private GameClock clock = new GameClock();
+    private final Map<Integer, Future<Maze>> preloadedMazes = new HashMap<Integer, Future<Maze>>();
     
     /**
      * The game constructor.
+     * 
+     * Starts loading the first parts in the background.
      * @param board the game graphic board
      * @param menu the game menu
+     * @param campaign the campaign to play
      */
-    public Game(GraphicBoard board, MainMenu menu) {
+    public Game(GraphicBoard board, MainMenu menu, Campaign campaign) {
         this.board = board;
         this.menu = menu;
+        this.campaign = campaign;
+        preload(1);
+    }
+    
+    /**
+     * Returns the played campaign.
+     * @return the campaign
+     */
+    public Campaign getCampaign() {
+        return campaign;
     }
     
     /**
      * Loads the game resources and starts the game.
+     * 
+     * If the part was preloaded, the preloaded maze is used. Meanwhile, the
+     * next parts start loading in the background.
      * @param partNumber the game part number
      */
     public void start(final int partNumber) {
         try {
-            maze = Maze.load(getClass().getClassLoader().getResourceAsStream("lostmazed/res/part" + partNumber + ".maze"));
-            player = new Player(board, maze);
+            maze = takePreloaded(partNumber);
+            
+            if (maze == null)
+                maze = loadPart(partNumber);
+            
+            preload(partNumber + 1);
+            clock.clear();
+            player = new Player(board, maze, clock);
             
             maze.play(board, player, new Runnable() {
                 @Override
@@ -76,6 +119,7 @@ public class Game {
                     showStory(partNumber + 1);
                 }
             });
+            clock.start();
             
             board.setKeyPressListener(new KeyListener() {
                 @Override
@@ -101,6 +145,9 @@ public class Game {
         new MessageDialog(board, "Do you really want to quit the game?").openYesNo(new Runnable() {
             @Override
             public void run() {
+                clock.dispose();
+                // the window after the last part is empty, so all loading is cancelled
+                preload(campaign.getPartCount() + 1);
                 menu.show();
             }
         }, null);
@@ -111,6 +158,104 @@ public class Game {
      * @param partNumber the game part number
      */
     private void showStory(int partNumber) {
+        clock.clear();
         new Story(board, menu, this).show(partNumber);
     }
+    
+    /**
+     * Starts loading the parts from the given one up to the size of the
+     * window in the background, and cancels loading the parts outside it.
+     * @param firstPart the first part to load
+     */
+    private synchronized void preload(int firstPart) {
+        int lastPart = Math.min(firstPart + PRELOADED_PARTS - 1, campaign.getPartCount());
+        Iterator<Map.Entry<Integer, Future<Maze>>> iterator = preloadedMazes.entrySet().iterator();
+        
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Future<Maze>> entry = iterator.next();
+            
+            if (entry.getKey() < firstPart || entry.getKey() > lastPart) {
+                entry.getValue().cancel(false);
+                iterator.remove();
+            }
+        }
+        
+        for (int part = firstPart; part <= lastPart; part++) {
+            if (preloadedMazes.containsKey(part))
+                continue;
+            
+            final int partNumber = part;
+            
+            preloadedMazes.put(part, getLoader().submit(new Callable<Maze>() {
+                @Override
+                public Maze call() throws IOException {
+                    Maze maze = loadPart(partNumber);
+                    maze.getDistanceField(Player.getFootprint());
+                    
+                    return maze;
+                }
+            }));
+        }
+    }
+    
+    /**
+     * Returns the preloaded maze of the particular part and forgets it.
+     * 
+     * If the maze is still loading, waits for it.
+     * @param partNumber the game part number
+     * @return the maze or null if the part was not preloaded or its loading
+     * failed
+     */
+    private Maze takePreloaded(int partNumber) {
+        Future<Maze> future;
+        
+        synchronized (this) {
+            future = preloadedMazes.remove(partNumber);
+        }
+        
+        if (future == null)
+            return null;
+        
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return null;
+        } catch (CancellationException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Loads the maze of the particular part.
+     * @param partNumber the game part number
+     * @return the maze
+     * @throws IOException when the maze could not be loaded
+     */
+    private Maze loadPart(int partNumber) throws IOException {
+        return Maze.loadResource(campaign.getMaze(partNumber));
+    }
+    
+    /**
+     * Returns the executor loading mazes in the background, creating it if
+     * necessary.
+     * @return the executor shared by all games
+     */
+    private static synchronized ExecutorService getLoader() {
+        if (loader == null) {
+            loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Maze loader");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        
+        return loader;
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The clock driving all moving objects of the game at a fixed rate.
+ *
+ * All clocks share one scheduler thread, so the number of threads does not
+ * depend on the number of games played. The clock does not tick while all
+ * its listeners are idle; a listener calls {@link #wake()} when it needs
+ * ticks again.
+ *
+ * A listener throwing an exception is logged and does not stop the clock.
+ * @author Matúš Sulír
+ */
+public class GameClock {
+    /**
+     * The time between two ticks in milliseconds.
+     */
+    public static final int PERIOD = 20;
+
+    private static final Logger logger = Logger.getLogger(GameClock.class.getName());
+    private static ScheduledExecutorService scheduler;
+
+    private final List<TickListener> listeners = new CopyOnWriteArrayList<TickListener>();
+    private ScheduledFuture<?> future;
+    private Runnable ticker;
+    private boolean running;
+    private boolean wakeRequested;
+    private volatile long ticks;
+    private long lastTickTime;
+
+    /**
+     * Registers an object which will be notified on every tick.
+     * @param listener the listener
+     */
+    public void addListener(TickListener listener) {
+        listeners.add(listener);
+        wake();
+    }
+
+    /**
+     * Unregisters the object.
+     * @param listener the listener
+     */
+    public void removeListener(TickListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Unregisters all objects.
+     */
+    public void clear() {
+        listeners.clear();
+    }
+
+    /**
+     * Starts ticking.
+     */
+    public synchronized void start() {
+        running = true;
+        wake();
+    }
+
+    /**
+     * Stops ticking until the clock is started again.
+     */
+    public synchronized void stop() {
+        running = false;
+        suspend();
+    }
+
+    /**
+     * Stops the clock and unregisters all objects.
+     */
+    public void dispose() {
+        stop();
+        clear();
+    }
+
+    /**
+     * Resumes ticking if the clock is running but was suspended because all
+     * listeners were idle.
+     */
+    public synchronized void wake() {
+        wakeRequested = true;
+
+        if (running && future == null) {
+            ticker = new Runnable() {
+                @Override
+                public void run() {
+                    tick(this);
+                }
+            };
+            future = getScheduler().scheduleAtFixedRate(ticker, PERIOD, PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the number of ticks performed since the clock was created.
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Notifies all listeners and suspends the clock if none of them needs
+     * further ticks.
+     *
+     * A tick of a task which was already cancelled (e.g. by stopping and
+     * starting the clock while the tick was waiting) does nothing, so it can
+     * not suspend the currently scheduled task.
+     * @param task the scheduled task performing this tick
+     */
+    private void tick(Runnable task) {
+        synchronized (this) {
+            if (task != ticker)
+                return;
+
+            wakeRequested = false;
+        }
+
+        long startTime = Metrics.ENABLED ? System.nanoTime() : 0;
+        boolean active = false;
+
+        if (Metrics.ENABLED)
+            recordLateness(startTime);
+
+        for (TickListener listener : listeners) {
+            try {
+                active |= listener.onTick();
+            } catch (RuntimeException ex) {
+                logger.log(Level.SEVERE, "A tick listener failed", ex);
+            }
+        }
+
+        ticks++;
+
+        if (Metrics.ENABLED)
+            Metrics.recordTick(System.nanoTime() - startTime);
+
+        synchronized (this) {
+            if (task == ticker && !active && !wakeRequested)
+                suspend();
+        }
+    }
+
+    /**
+     * Counts the ticks which should have been performed since the last one,
+     * but were not, because the previous ticks took too long.
+     * @param now the start time of the current tick
+     */
+    private void recordLateness(long now) {
+        long period = TimeUnit.MILLISECONDS.toNanos(PERIOD);
+
+        if (lastTickTime != 0) {
+            long dropped = (now - lastTickTime + period / 2) / period - 1;
+
+            if (dropped > 0)
+                Metrics.recordFramesDropped(dropped);
+        }
+
+        lastTickTime = now;
+    }
+
+    /**
+     * Cancels the scheduled ticking.
+     */
+    private synchronized void suspend() {
+        lastTickTime = 0;
+
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+            ticker = null;
+        }
+    }
+
+    /**
+     * Returns the scheduler shared by all clocks, creating it if necessary.
+     * @return the scheduler
+     */
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Game clock");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return scheduler;
+    }
+}
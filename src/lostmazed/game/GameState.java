@@ -0,0 +1,159 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * An immutable snapshot of the game after a tick, published by the
+ * simulation and displayed by the renderer.
+ *
+ * The uncovered fog tiles are shared between snapshots: the array only
+ * grows and its first {@link #getRevealedCount()} elements never change, so
+ * a renderer which skipped some snapshots can still show every tile.
+ * @author Matúš Sulír
+ */
+public class GameState {
+    private final long tick;
+    private final int x;
+    private final int y;
+    private final int centerX;
+    private final int centerY;
+    private final int angle;
+    private final boolean moving;
+    private final boolean finished;
+    private final int[] revealedTiles;
+    private final int revealedCount;
+
+    /**
+     * Constructs the snapshot.
+     * @param tick the number of simulated ticks
+     * @param x the x coordinate of the player's top left corner
+     * @param y the y coordinate of the player's top left corner
+     * @param centerX the x coordinate of the player's center
+     * @param centerY the y coordinate of the player's center
+     * @param angle the angle of the player's image in degrees
+     * @param moving true if the player is moving
+     * @param finished true if the player has reached the end
+     * @param revealedTiles the indexes of all uncovered fog tiles, in the
+     * order of uncovering
+     * @param revealedCount the number of valid elements of revealedTiles
+     */
+    GameState(long tick, int x, int y, int centerX, int centerY, int angle, boolean moving,
+            boolean finished, int[] revealedTiles, int revealedCount) {
+        this.tick = tick;
+        this.x = x;
+        this.y = y;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.angle = angle;
+        this.moving = moving;
+        this.finished = finished;
+        this.revealedTiles = revealedTiles;
+        this.revealedCount = revealedCount;
+    }
+
+    /**
+     * Returns the number of ticks simulated before this snapshot.
+     * @return the tick count
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the x coordinate of the player's top left corner.
+     * @return the x coordinate in the maze
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate of the player's top left corner.
+     * @return the y coordinate in the maze
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the x coordinate of the player's center.
+     * @return the x coordinate in the maze
+     */
+    public int getCenterX() {
+        return centerX;
+    }
+
+    /**
+     * Returns the y coordinate of the player's center.
+     * @return the y coordinate in the maze
+     */
+    public int getCenterY() {
+        return centerY;
+    }
+
+    /**
+     * Returns the angle of the player's image, which is kept when the player
+     * stops.
+     * @return the angle in degrees
+     */
+    public int getAngle() {
+        return angle;
+    }
+
+    /**
+     * Returns true if the player is moving, so the animation should run.
+     * @return true if moving
+     */
+    public boolean isMoving() {
+        return moving;
+    }
+
+    /**
+     * Returns true if the player has reached the end.
+     * @return true if the maze is finished
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns the number of fog tiles uncovered since the start.
+     * @return the tile count
+     */
+    public int getRevealedCount() {
+        return revealedCount;
+    }
+
+    /**
+     * Returns the specified uncovered fog tile.
+     * @param index the order of uncovering, less than the revealed count
+     * @return the tile index, see {@link FogGrid#uncover(int)}
+     */
+    public int getRevealedTile(int index) {
+        if (index >= revealedCount)
+            throw new IndexOutOfBoundsException("The tile " + index + " was not revealed yet");
+
+        return revealedTiles[index];
+    }
+}
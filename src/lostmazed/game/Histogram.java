@@ -0,0 +1,143 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with a bounded relative error.
+ *
+ * Values are counted in buckets whose width grows with the value: each power
+ * of two is split into eight buckets, so a percentile is off by at most
+ * 12.5 %. Recording is lock-free and needs no allocation.
+ * @author Matúš Sulír
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Adds a value.
+     * @param value the value, negative values are counted as zero
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        
+        counts.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        
+        long currentMax;
+        
+        do {
+            currentMax = max.get();
+        } while (value > currentMax && !max.compareAndSet(currentMax, value));
+    }
+    
+    /**
+     * Returns the number of recorded values.
+     * @return the count
+     */
+    public long getCount() {
+        return count.get();
+    }
+    
+    /**
+     * Returns the arithmetic mean of the recorded values.
+     * @return the mean, or 0 if there are no values
+     */
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : (double) sum.get() / n;
+    }
+    
+    /**
+     * Returns the maximal recorded value.
+     * @return the maximum, or 0 if there are no values
+     */
+    public long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * Returns the value below which the given percentage of values falls.
+     * @param percentile the percentage, e.g. 99
+     * @return the lower bound of the bucket containing the percentile, or 0
+     * if there are no values
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            
+            if (seen >= wanted)
+                return getLowerBound(bucket);
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Removes all values.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            counts.set(bucket, 0);
+        
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+    
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    private static long getLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
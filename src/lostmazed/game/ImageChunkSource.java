@@ -0,0 +1,82 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Chunks of an image held in memory.
+ *
+ * The chunks share the pixel data with the image, so they take almost no
+ * additional memory.
+ * @author Matúš Sulír
+ */
+public class ImageChunkSource implements ChunkSource {
+    /**
+     * The default chunk size.
+     */
+    public static final int CHUNK_SIZE = 256;
+
+    private final BufferedImage image;
+
+    /**
+     * Constructs the chunk source.
+     * @param image the whole image
+     */
+    public ImageChunkSource(BufferedImage image) {
+        this.image = image;
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    @Override
+    public int getChunkSize() {
+        return CHUNK_SIZE;
+    }
+
+    @Override
+    public BufferedImage getChunk(int column, int row) {
+        int x = column * CHUNK_SIZE;
+        int y = row * CHUNK_SIZE;
+
+        if (column < 0 || row < 0 || x >= image.getWidth() || y >= image.getHeight())
+            return null;
+
+        return image.getSubimage(x, y, Math.min(CHUNK_SIZE, image.getWidth() - x),
+                Math.min(CHUNK_SIZE, image.getHeight() - y));
+    }
+
+    @Override
+    public void prefetch(int column, int row) {
+        // the whole image is already in memory
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.OutputStream;
+
+/**
+ * A log of key presses and releases during one run, stamped with the tick at
+ * which they took effect.
+ *
+ * Each event is stored as two variable-length integers: the number of ticks
+ * since the previous event and the key code combined with the press flag.
+ * A typical event therefore takes only two or three bytes. The log can be
+ * replayed by a {@link Simulation}, which reproduces the run exactly.
+ * @author Matúš Sulír
+ */
+public class InputLog implements InputScript {
+    private static final int FORMAT_TAG = 0x72754E6C;
+    private static final int VERSION = 1;
+    
+    private final ByteArrayOutputStream events;
+    private int count;
+    private long lastTick;
+    private byte[] replayed;
+    private int replayPosition;
+    private int replayCount;
+    private long replayTick;
+    
+    /**
+     * Constructs an empty log.
+     */
+    public InputLog() {
+        events = new ByteArrayOutputStream();
+    }
+    
+    /**
+     * Adds an event to the end of the log.
+     * @param tick the tick before which the key was pressed or released
+     * @param keyCode the key code from {@link java.awt.event.KeyEvent}
+     * @param pressed true if the key was pressed, false if released
+     * @throws IllegalStateException when the log is being replayed
+     */
+    public synchronized void record(long tick, int keyCode, boolean pressed) {
+        if (replayed != null)
+            throw new IllegalStateException("Events can not be recorded while the log is replayed");
+        
+        if (tick < lastTick)
+            throw new IllegalArgumentException("The events must be recorded in the order of ticks");
+        
+        writeVarint(events, tick - lastTick);
+        writeVarint(events, ((long) keyCode << 1) | (pressed ? 1 : 0));
+        lastTick = tick;
+        count++;
+    }
+    
+    /**
+     * Returns the number of recorded events.
+     * @return the event count
+     */
+    public synchronized int size() {
+        return count;
+    }
+    
+    /**
+     * Returns the tick of the last recorded event.
+     * @return the tick number
+     */
+    public synchronized long getLastTick() {
+        return lastTick;
+    }
+    
+    /**
+     * Starts the replay from the beginning. Until the replay starts again,
+     * events can be recorded.
+     */
+    public synchronized void rewind() {
+        replayed = null;
+    }
+    
+    @Override
+    public synchronized void beforeTick(long tick, Simulation simulation) {
+        if (replayed == null) {
+            replayed = events.toByteArray();
+            replayPosition = 0;
+            replayCount = 0;
+            replayTick = 0;
+        }
+        
+        while (replayCount < count) {
+            int position = replayPosition;
+            long eventTick = replayTick + readVarint();
+            
+            if (eventTick > tick) {
+                replayPosition = position;
+                break;
+            }
+            
+            long key = readVarint();
+            simulation.setKey((int) (key >>> 1), (key & 1) != 0);
+            replayTick = eventTick;
+            replayCount++;
+        }
+    }
+    
+    @Override
+    public synchronized boolean isFinished(long tick) {
+        return replayed != null && replayCount >= count;
+    }
+    
+    /**
+     * Saves the log to a file.
+     * @param file the output file
+     * @throws IOException when the file could not be written
+     */
+    public void save(File file) throws IOException {
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+        
+        try {
+            write(output);
+        } finally {
+            output.close();
+        }
+    }
+    
+    /**
+     * Writes the log to a stream.
+     * @param output the output stream, which is not closed
+     * @throws IOException when the log could not be written
+     */
+    public synchronized void write(OutputStream output) throws IOException {
+        DataOutputStream data = new DataOutputStream(output);
+        
+        data.writeInt(FORMAT_TAG);
+        data.writeInt(VERSION);
+        data.writeInt(count);
+        events.writeTo(data);
+        data.flush();
+    }
+    
+    /**
+     * Loads a log from a file.
+     * @param file the input file
+     * @return the log
+     * @throws IOException when the file could not be read or is invalid
+     */
+    public static InputLog load(File file) throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        
+        try {
+            return read(input);
+        } finally {
+            input.close();
+        }
+    }
+    
+    /**
+     * Reads a log from a stream.
+     * @param input the input stream, which is not closed
+     * @return the log
+     * @throws IOException when the log could not be read or is invalid
+     */
+    public static InputLog read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(input);
+        
+        if (data.readInt() != FORMAT_TAG || data.readInt() != VERSION)
+            throw new InvalidObjectException("The input log has an invalid format");
+        
+        int count = data.readInt();
+        InputLog log = new InputLog();
+        
+        for (int i = 0; i < count; i++) {
+            long tick = log.lastTick + readVarint(data);
+            long key = readVarint(data);
+            log.record(tick, (int) (key >>> 1), (key & 1) != 0);
+        }
+        
+        return log;
+    }
+    
+    /**
+     * Reads a variable-length integer from the replayed events.
+     * @return the value
+     */
+    private long readVarint() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        
+        do {
+            b = replayed[replayPosition++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        
+        return value;
+    }
+    
+    /**
+     * Reads a variable-length integer from a stream.
+     * @param input the input stream
+     * @return the value
+     * @throws IOException when the stream ends or the value is too long
+     */
+    private static long readVarint(DataInputStream input) throws IOException {
+        long value = 0;
+        
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            
+            if (b == -1)
+                throw new EOFException("The input log is truncated");
+            
+            value |= (long) (b & 0x7F) << shift;
+            
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        
+        throw new InvalidObjectException("The input log has an invalid format");
+    }
+    
+    /**
+     * Writes a non-negative number as 7-bit groups, lowest first, with the
+     * highest bit set on all bytes except the last one.
+     * @param output the output
+     * @param value the value
+     */
+    private static void writeVarint(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        
+        output.write((int) value);
+    }
+}
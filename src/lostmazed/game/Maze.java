@@ -23,17 +23,21 @@
  */
 package lostmazed.game;
 
-import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import javax.imageio.ImageIO;
 import soga2d.GraphicBoard;
 import soga2d.GraphicObject;
-import soga2d.ProximityDetector;
-import soga2d.events.ProximityListener;
 import soga2d.objects.Picture;
-import soga2d.objects.Rectangle;
 import soga2d.objects.Texture;
 
 /**
@@ -52,15 +56,51 @@ public class Maze {
      */
     public static final int END_DISTANCE = 15;
     
-    private static final int BLACK_TILE_SIZE = 25;
-    private static final int UNCOVER_DISTANCE = 50;
-    private static final int FORMAT_TAG = 0x70573A73;
-    private static final int VERSION = 1;
+    /**
+     * The tag at the beginning of all maze files.
+     */
+    static final int FORMAT_TAG = 0x70573A73;
+    
+    /**
+     * Mazes wider or higher than this are saved in the tiled format.
+     */
+    public static final int TILED_SIZE = 4096;
+    
+    /**
+     * The version of the format written for mazes of normal size.
+     */
+    public static final int VERSION = 2;
+    
+    /**
+     * The size of the version 2 header, after which the wall mask starts.
+     */
+    private static final int HEADER_SIZE = 40;
+    
+    /**
+     * The size of the version 1 header, after which the images start.
+     */
+    private static final int VERSION_1_HEADER_SIZE = 32;
+    
+    private static final MazeCache cache = new MazeCache(MazeCache.DEFAULT_MAX_PIXELS);
     
     private GraphicObject background;
     private GraphicObject maze;
+    private ChunkSource backgroundSource;
+    private ChunkSource mazeSource;
     private Point start;
     private Point end;
+    private MazeCollisions collisions;
+    private FogOfWar fog;
+    private int shownTiles;
+    private Camera camera;
+    private ChunkedLayer sceneLayer;
+    private int displayGeneration;
+    private BufferedImage scene;
+    private int sceneGeneration;
+    private boolean endShown;
+    private GraphicBoard board;
+    private Player player;
+    private Runnable endAction;
     
     /**
      * Constructs the maze.
@@ -75,13 +115,45 @@ public class Maze {
         this.start = start;
         this.end = end;
     }
+    
+    /**
+     * Constructs the maze from decoded data, sharing its collision data.
+     * @param entry the decoded maze data
+     */
+    private Maze(MazeCache.Entry entry) {
+        this(new Picture(entry.getBackground()), new Texture(entry.getMaze(),
+                getTextureSize(entry.getMaze().getWidth(), Game.WIDTH),
+                getTextureSize(entry.getMaze().getHeight(), Game.HEIGHT)),
+                entry.getStart(), entry.getEnd());
+        collisions = entry.getCollisions();
+    }
+    
+    /**
+     * Constructs the maze from a tiled file, whose tiles will be decoded on
+     * demand.
+     * @param file the tiled maze file
+     */
+    private Maze(TiledMazeFile file) {
+        this(null, null, file.getStart(), file.getEnd());
+        backgroundSource = file.getBackground();
+        mazeSource = file.getMaze();
+        collisions = new MazeCollisions(file.getWalls());
+    }
 
     /**
      * Adds this maze to the specified board without starting the game.
+     * 
+     * For a tiled maze, only the top left part is added.
      * @param board the board to use
      */
     public void addToBoard(GraphicBoard board) {
-        board.addObjects(background, maze);
+        if (background != null && maze != null) {
+            board.addObjects(background, maze);
+        } else {
+            Camera view = new Camera(Game.WIDTH, Game.HEIGHT);
+            new ChunkedLayer(getBackgroundSource()).update(board, view);
+            new ChunkedLayer(getMazeSource()).update(board, view);
+        }
     }
     
     /**
@@ -90,6 +162,8 @@ public class Maze {
      */
     public void setBackground(GraphicObject background) {
         this.background = background;
+        backgroundSource = null;
+        scene = null;
     }
     
     /**
@@ -104,8 +178,70 @@ public class Maze {
      * Sets the maze image.
      * @param maze the maze image
      */
-    public void setMaze(GraphicObject maze) {
+    public synchronized void setMaze(GraphicObject maze) {
         this.maze = maze;
+        mazeSource = null;
+        collisions = null;
+        scene = null;
+    }
+    
+    /**
+     * Returns the collision data of the maze walls, computing the wall mask
+     * if necessary.
+     * 
+     * Walls smaller than the board are repeated to fill it, the same way as
+     * when they are displayed, so every repeated copy is solid.
+     * @return the collision data
+     */
+    public synchronized MazeCollisions getCollisions() {
+        if (collisions == null) {
+            BufferedImage image = maze.getImage();
+            
+            if (image == null)
+                collisions = new MazeCollisions(new CollisionMask(0, 0, 0, 0));
+            else
+                collisions = new MazeCollisions(createWalls(image, null));
+        }
+        
+        return collisions;
+    }
+    
+    /**
+     * Returns the mask of all wall pixels, computing it if necessary.
+     * @return the wall mask
+     */
+    public CollisionMask getWalls() {
+        return getCollisions().getWalls();
+    }
+    
+    /**
+     * Returns the mask of positions where the sprite with the given footprint
+     * would collide with the walls.
+     * @param footprint the footprint of the sprite
+     * @return the collision mask
+     */
+    public CollisionMask getCollisionMask(Footprint footprint) {
+        return getCollisions().getCollisionMask(footprint);
+    }
+    
+    /**
+     * Returns the positions where the sprite with the given footprint would
+     * collide with the walls.
+     * @param footprint the footprint of the sprite
+     * @return the obstacles
+     */
+    public Obstacles getObstacles(Footprint footprint) {
+        return getCollisions().getObstacles(footprint);
+    }
+    
+    /**
+     * Returns the distance field of the collision mask for the given
+     * footprint.
+     * @param footprint the footprint of the sprite
+     * @return the distance field, or null for a very large maze
+     */
+    public DistanceField getDistanceField(Footprint footprint) {
+        return getCollisions().getDistanceField(footprint);
     }
     
     /**
@@ -132,40 +268,192 @@ public class Maze {
     public void setEndpoints(Point start, Point end) {
         this.start = start;
         this.end = end;
+        
+        if (endShown)
+            scene = null;
+    }
+    
+    /**
+     * Sets whether the ending point is marked while playing. This is useful
+     * when the maze image itself does not show it.
+     * @param endShown true to mark the ending point
+     */
+    public void setEndShown(boolean endShown) {
+        if (endShown != this.endShown) {
+            this.endShown = endShown;
+            scene = null;
+        }
     }
     
     /**
      * Registers the player who will use this maze, places him to the start
      * and starts the game itself.
+     * 
+     * The maze can be larger than the board; in that case, the camera follows
+     * the player and only the visible chunks of the maze are displayed.
+     * 
+     * The background, the walls and the optional end mark are drawn as one
+     * opaque layer. For a maze held in memory, this layer is composited once
+     * and reused until a layer changes. A tiled maze is composited chunk by
+     * chunk as the chunks become visible.
      * @param board the board to use
      * @param player the player
-     * @param endAction the action to perform after successful finish (can be null)
+     * @param endAction the action to perform after successful finish (can be null),
+     * called at most once on the event dispatch thread, with the board locked
      */
     public void play(GraphicBoard board, Player player, Runnable endAction) {
         board.lock();
         board.clear();
         
-        addToBoard(board);
+        int worldWidth = getWorldWidth();
+        int worldHeight = getWorldHeight();
+        
+        this.board = board;
+        this.player = player;
+        camera = new Camera(worldWidth, worldHeight);
+        createScene();
+        fog = null;
+        
+        updateView(true);
         player.getGraphics().bringToForeground();
-        showBlackTiles(board, player);
+        showBlackTiles(board, worldWidth, worldHeight);
         
         player.placeTo(start);
-        registerEndAction(board, player, endAction);
+        this.endAction = endAction;
         
         board.unlock();
+        StartupTimes.expectFirstFrame();
+    }
+    
+    /**
+     * Returns the width of the whole maze, which is at least the board width.
+     * @return the width in pixels
+     */
+    public int getWorldWidth() {
+        return Math.max(Game.WIDTH, Math.max(getWidth(getBackgroundSource()), getWidth(getMazeSource())));
+    }
+    
+    /**
+     * Returns the height of the whole maze, which is at least the board
+     * height.
+     * @return the height in pixels
+     */
+    public int getWorldHeight() {
+        return Math.max(Game.HEIGHT, Math.max(getHeight(getBackgroundSource()), getHeight(getMazeSource())));
+    }
+    
+    /**
+     * Finds the shortest path of the player from the start to the end.
+     * @return the solution
+     * @throws IOException when the player image can not be loaded
+     */
+    public MazeSolution solve() throws IOException {
+        Footprint footprint = Player.getFootprint();
+        MazeSolver solver = new MazeSolver(getObstacles(footprint), getWorldWidth(), getWorldHeight(), footprint);
+        
+        return solver.solve(start, end);
+    }
+    
+    /**
+     * Returns a copy of this maze sharing its images and collision data, so
+     * that it can be saved in the background while this maze is edited.
+     * @return the copy
+     */
+    public synchronized Maze snapshot() {
+        Maze copy = new Maze(background, maze, new Point(start), new Point(end));
+        copy.backgroundSource = backgroundSource;
+        copy.mazeSource = mazeSource;
+        copy.collisions = collisions;
+        
+        return copy;
+    }
+    
+    /**
+     * Returns the camera used while playing.
+     * @return the camera or null if the maze is not being played
+     */
+    public Camera getCamera() {
+        return camera;
     }
 
     /**
      * Saves this maze to a file.
+     * 
+     * Mazes larger than {@link #TILED_SIZE} and mazes loaded from a tiled
+     * file are saved in the tiled format.
      * @param file the output file
      * @throws IOException when the file could not be saved
      */
     public void save(File file) throws IOException {
-        DataOutputStream output = null;
+        save(file, false);
+    }
+    
+    /**
+     * Saves this maze to a file.
+     * 
+     * The maze is written into a temporary file which then replaces the
+     * output file, so an interrupted save never leaves a damaged file behind.
+     * Both images are encoded in parallel.
+     * @param file the output file
+     * @param maxCompression true to compress the images as much as possible
+     * at the cost of time
+     * @throws IOException when the file could not be saved
+     */
+    public void save(File file, boolean maxCompression) throws IOException {
+        ChunkSource backgroundChunks = getBackgroundSource();
+        ChunkSource mazeChunks = getMazeSource();
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temporary = null;
+        boolean saved = false;
         
         try {
-            output = new DataOutputStream(new FileOutputStream(file));
-
+            temporary = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+            
+            if (backgroundSource != null || mazeSource != null
+                    || Math.max(getWidth(backgroundChunks), getWidth(mazeChunks)) > TILED_SIZE
+                    || Math.max(getHeight(backgroundChunks), getHeight(mazeChunks)) > TILED_SIZE)
+                TiledMazeFile.write(temporary, backgroundChunks, mazeChunks, getWalls(), start, end, maxCompression);
+            else
+                write(temporary, maxCompression);
+            
+            cache.remove(file);
+            replace(temporary, file);
+            saved = true;
+        } catch (IOException ex) {
+            throw new IOException("The maze could not be saved", ex);
+        } finally {
+            if (!saved && temporary != null)
+                temporary.delete();
+        }
+    }
+    
+    /**
+     * Writes this maze in the version 2 format.
+     * 
+     * The maze image is encoded in the background while the background image
+     * is streamed directly into the file. The image lengths in the header are
+     * filled in at the end.
+     * @param file the output file
+     * @param maxCompression true to compress the images as much as possible
+     * @throws IOException when the file could not be written
+     */
+    private void write(File file, final boolean maxCompression) throws IOException {
+        final BufferedImage mazeImage = maze.getImage();
+        Future<byte[]> mazeResult = WorkerPool.get().submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                PngEncoder.write(mazeImage, stream, maxCompression);
+                return stream.toByteArray();
+            }
+        });
+        
+        FileOutputStream stream = new FileOutputStream(file);
+        
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+            CollisionMask mask = getWalls();
+            
             output.writeInt(FORMAT_TAG);
             output.writeInt(VERSION);
 
@@ -174,41 +462,117 @@ public class Maze {
             output.writeInt((int) end.getX());
             output.writeInt((int) end.getY());
 
-            ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
-            ImageIO.write(background.getImage(), "png", imageStream);
-            byte[] backgroundBytes = imageStream.toByteArray();
-
-            imageStream.reset();
-            ImageIO.write(maze.getImage(), "png", imageStream);
-            byte[] mazeBytes = imageStream.toByteArray();
-
-            output.writeInt(backgroundBytes.length);
-            output.writeInt(mazeBytes.length);
+            output.writeInt(mask.getWidth());
+            output.writeInt(mask.getHeight());
+            output.writeInt(0);
+            output.writeInt(0);
 
-            output.write(backgroundBytes);
+            mask.write(output);
+            
+            int backgroundStart = output.size();
+            PngEncoder.write(background.getImage(), output, maxCompression);
+            int backgroundLength = output.size() - backgroundStart;
+            
+            byte[] mazeBytes = getResult(mazeResult);
             output.write(mazeBytes);
-        } catch (IOException ex) {
-            throw new IOException("The maze could not be saved", ex);
+            output.flush();
+            
+            ByteBuffer lengths = ByteBuffer.allocate(8);
+            lengths.putInt(backgroundLength).putInt(mazeBytes.length).flip();
+            stream.getChannel().write(lengths, HEADER_SIZE - 8);
         } finally {
-            if (output != null)
-                output.close();
+            stream.close();
         }
     }
     
+    /**
+     * Waits for an image to be encoded or decoded.
+     * @param <T> the type of the result
+     * @param result the result of the task
+     * @return the encoded or decoded image
+     * @throws IOException when the image could not be processed
+     */
+    private static <T> T getResult(Future<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an image");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            
+            throw new IOException("The image could not be processed", ex.getCause());
+        }
+    }
+    
+    /**
+     * Replaces a file with another one. The replacement is atomic where the
+     * file system supports it.
+     * @param source the new file
+     * @param target the file to replace
+     * @throws IOException when the file could not be replaced
+     */
+    private static void replace(File source, File target) throws IOException {
+        if (source.renameTo(target))
+            return;
+        
+        // some platforms do not allow renaming to an existing file
+        if (!target.delete() || !source.renameTo(target))
+            throw new IOException("The file " + target + " could not be replaced");
+    }
+    
     /**
      * Loads a maze from a file.
+     * 
+     * The wall mask of a version 2 file is copied from the mapped file,
+     * without computing it. Loading an unchanged file
+     * again reuses the already decoded data. The tiles of a tiled file are
+     * decoded only when they are displayed.
      * @param file the input file
      * @return the loaded maze
      * @throws IOException when the maze could not be loaded
      */
     public static Maze load(File file) throws IOException {
         try {
-            return load(new FileInputStream(file));
+            if (readVersion(file) == TiledMazeFile.VERSION)
+                return new Maze(new TiledMazeFile(file));
+            
+            String key = MazeCache.getKey(file);
+            MazeCache.Entry entry = cache.get(key);
+            
+            if (entry == null) {
+                entry = decode(file);
+                cache.put(key, entry);
+            }
+            
+            return new Maze(entry);
         } catch (IOException ex) {
             throw new IOException("The maze file could not be loaded", ex);
         }
     }
     
+    /**
+     * Loads a maze from a class path resource.
+     * 
+     * The maze is decoded directly from the asset pack. Loading the same
+     * resource again reuses the already decoded data.
+     * @param name the resource name
+     * @return the loaded maze
+     * @throws IOException when the maze could not be loaded
+     */
+    public static Maze loadResource(String name) throws IOException {
+        String key = MazeCache.getKey(name);
+        MazeCache.Entry entry = cache.get(key);
+        
+        if (entry == null) {
+            entry = decode(Assets.getBuffer(name));
+            cache.put(key, entry);
+        }
+        
+        return new Maze(entry);
+    }
+    
     /**
      * Loads a maze from an input stream.
      * @param file the input stream
@@ -216,33 +580,109 @@ public class Maze {
      * @throws IOException when the maze could not be loaded
      */
     public static Maze load(InputStream stream) throws IOException {
+        return new Maze(decode(stream));
+    }
+    
+    /**
+     * Returns the cache of decoded mazes.
+     * @return the cache shared by all loading methods
+     */
+    public static MazeCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * Reads the format version of a maze file.
+     * @param file the maze file
+     * @return the version number
+     * @throws IOException when the file is not a maze file
+     */
+    public static int readVersion(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        
+        try {
+            if (input.readInt() != FORMAT_TAG)
+                throw new InvalidObjectException("The maze file has an invalid format");
+            
+            return input.readInt();
+        } finally {
+            input.close();
+        }
+    }
+    
+    /**
+     * Decodes a maze file.
+     * 
+     * The file is mapped into memory and decoded from the mapping. Nothing
+     * decoded refers to the mapping, so it can be released as soon as the
+     * file is loaded; until then, some platforms do not allow to replace the
+     * file, e.g. when saving the edited maze over it.
+     * @param file the input file
+     * @return the decoded maze data
+     * @throws IOException when the maze could not be decoded
+     */
+    private static MazeCache.Entry decode(File file) throws IOException {
+        RandomAccessFile input = null;
+        
+        try {
+            input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel();
+            
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            return decode(buffer);
+        } finally {
+            if (input != null)
+                input.close();
+        }
+    }
+    
+    /**
+     * Decodes a maze from an input stream.
+     * @param stream the input stream
+     * @return the decoded maze data
+     * @throws IOException when the maze could not be decoded
+     */
+    private static MazeCache.Entry decode(InputStream stream) throws IOException {
         DataInputStream input = null;
         
         try {
-            input = new DataInputStream(stream);
+            input = new DataInputStream(new BufferedInputStream(stream));
 
             int formatTag = input.readInt();
             int version = input.readInt();
             
-            if (formatTag != FORMAT_TAG || version != VERSION)
+            if (formatTag == FORMAT_TAG && version == TiledMazeFile.VERSION)
+                throw new InvalidObjectException("A tiled maze can only be loaded from a file");
+            
+            if (formatTag != FORMAT_TAG || version < 1 || version > VERSION)
                 throw new InvalidObjectException("The maze file has an invalid format");
 
             Point start = new Point(input.readInt(), input.readInt());
             Point end = new Point(input.readInt(), input.readInt());
+            CollisionMask mask = null;
+            int maskWidth = 0;
+            int maskHeight = 0;
+            
+            if (version >= 2) {
+                maskWidth = input.readInt();
+                maskHeight = input.readInt();
+            }
             
             byte[] backgroundBytes = new byte[input.readInt()];
             byte[] mazeBytes = new byte[input.readInt()];
             
+            if (version >= 2) {
+                mask = new CollisionMask(0, 0, maskWidth, maskHeight);
+                mask.read(input);
+            }
+            
             input.readFully(backgroundBytes, 0, backgroundBytes.length);
             input.readFully(mazeBytes, 0, mazeBytes.length);
             
-            BufferedImage backgroundImage = ImageIO.read(new ByteArrayInputStream(backgroundBytes));
-            BufferedImage mazeImage = ImageIO.read(new ByteArrayInputStream(mazeBytes));
+            BufferedImage[] images = decodeImages(ByteBuffer.wrap(backgroundBytes), ByteBuffer.wrap(mazeBytes));
             
-            GraphicObject background = new Picture(backgroundImage);
-            GraphicObject maze = new Texture(mazeImage, Game.WIDTH, Game.HEIGHT);
-
-            return new Maze(background, maze, start, end);
+            return createEntry(images[0], images[1], start, end, mask);
         } catch (InvalidObjectException ex) {
             throw ex;
         } catch (IOException ex) {
@@ -253,47 +693,338 @@ public class Maze {
         }
     }
     
+    /**
+     * Decodes a maze in the version 1 or 2 format from a buffer.
+     * 
+     * The images are decoded directly from the buffer, without copying, and
+     * in parallel. For a mapped file, the compressed images are therefore
+     * never copied to the heap. The wall mask of a version 2 maze is copied
+     * out of the buffer in bulk, so the buffer is not needed after decoding.
+     * @param buffer the buffer containing the whole file
+     * @return the decoded maze data
+     * @throws IOException when the maze could not be decoded
+     */
+    private static MazeCache.Entry decode(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < 8 || buffer.getInt(0) != FORMAT_TAG)
+            throw new InvalidObjectException("The maze file has an invalid format");
+        
+        int version = buffer.getInt(4);
+        int headerSize = (version == 1) ? VERSION_1_HEADER_SIZE : HEADER_SIZE;
+        
+        if (version < 1 || version > VERSION || buffer.capacity() < headerSize)
+            throw new InvalidObjectException("The maze file has an invalid format");
+        
+        Point start = new Point(buffer.getInt(8), buffer.getInt(12));
+        Point end = new Point(buffer.getInt(16), buffer.getInt(20));
+        int maskWidth = (version == 1) ? 0 : buffer.getInt(24);
+        int maskHeight = (version == 1) ? 0 : buffer.getInt(28);
+        int backgroundLength = buffer.getInt(headerSize - 8);
+        int mazeLength = buffer.getInt(headerSize - 4);
+        long maskLength = 8L * ((maskWidth + 63L) >>> 6) * maskHeight;
+        
+        if (maskWidth < 0 || maskHeight < 0 || backgroundLength < 0 || mazeLength < 0
+                || headerSize + maskLength + backgroundLength + mazeLength > buffer.capacity())
+            throw new InvalidObjectException("The maze file has an invalid format");
+        
+        CollisionMask mask = null;
+        
+        if (version >= 2) {
+            buffer.position(headerSize);
+            mask = new CollisionMask(0, 0, maskWidth, maskHeight);
+            mask.read(buffer.asLongBuffer());
+        }
+        
+        int backgroundStart = (int) (headerSize + maskLength);
+        BufferedImage[] images = decodeImages(getView(buffer, backgroundStart, backgroundLength),
+                getView(buffer, backgroundStart + backgroundLength, mazeLength));
+        
+        return createEntry(images[0], images[1], start, end, mask);
+    }
+    
+    /**
+     * Returns a part of a buffer without copying it.
+     * @param buffer the buffer
+     * @param offset the offset of the part
+     * @param length the length of the part
+     * @return the buffer sharing the content of the part
+     */
+    private static ByteBuffer getView(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        
+        return view.slice();
+    }
+    
+    /**
+     * Decodes the background and the maze image in parallel and converts them
+     * into the display format.
+     * 
+     * The background is decoded in the worker pool and the maze image in the
+     * current thread. If no worker took the background yet, the current
+     * thread decodes it too, so it never waits for a busy pool.
+     * @param background the encoded background
+     * @param maze the encoded maze image
+     * @return the background and the maze image; null for an image which
+     * has an unknown format
+     * @throws IOException when an image could not be decoded
+     */
+    private static BufferedImage[] decodeImages(final ByteBuffer background, ByteBuffer maze) throws IOException {
+        FutureTask<BufferedImage> backgroundTask = new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws IOException {
+                return DisplayImages.prepare(ImageIO.read(new ByteBufferImageInputStream(background)));
+            }
+        });
+        
+        WorkerPool.get().execute(backgroundTask);
+        BufferedImage mazeImage = DisplayImages.prepare(ImageIO.read(new ByteBufferImageInputStream(maze)));
+        backgroundTask.run();
+        
+        return new BufferedImage[] {getResult(backgroundTask), mazeImage};
+    }
+    
+    /**
+     * Creates the maze data from the decoded parts.
+     * @param backgroundImage the background image
+     * @param mazeImage the maze "walls" image
+     * @param start the starting point
+     * @param end the ending point
+     * @param walls the wall mask, or null to compute it from the image
+     * @return the maze data
+     * @throws IOException when an image could not be decoded
+     */
+    private static MazeCache.Entry createEntry(BufferedImage backgroundImage, BufferedImage mazeImage,
+            Point start, Point end, CollisionMask walls) throws IOException {
+        if (backgroundImage == null || mazeImage == null)
+            throw new IOException("The maze images could not be decoded");
+        
+        return new MazeCache.Entry(backgroundImage, mazeImage, start, end,
+                new MazeCollisions(createWalls(mazeImage, walls)));
+    }
+    
+    /**
+     * Returns the mask of the walls repeated to cover at least the board.
+     * @param image the walls image
+     * @param stored the mask stored in the file, or null
+     * @return the stored mask if it has the right size (older files could
+     * contain a mask covering only one copy of the walls), otherwise a mask
+     * computed from the image
+     */
+    private static CollisionMask createWalls(BufferedImage image, CollisionMask stored) {
+        int width = getTextureSize(image.getWidth(), Game.WIDTH);
+        int height = getTextureSize(image.getHeight(), Game.HEIGHT);
+        
+        if (stored != null && stored.getWidth() == width && stored.getHeight() == height)
+            return stored;
+        
+        return CollisionMask.fromAlpha(image, width, height);
+    }
+    
+    /**
+     * Scrolls the view, uncovers the black tiles revealed by the player and
+     * performs the end action if the player reached the ending point.
+     * @param state the state of the game to display
+     * @param dirty the region to which the changed parts of the board are
+     * added
+     */
+    void show(GameState state, DirtyRegion dirty) {
+        if (camera != null && displayGeneration != DisplayImages.getGeneration()) {
+            // the window moved to another display, so the images must be converted again
+            sceneLayer.removeFromBoard(board);
+            createScene();
+            updateView(true);
+            dirty.addAll();
+        }
+        
+        if (camera != null && camera.follow(state.getCenterX(), state.getCenterY())) {
+            updateView(true);
+            dirty.addAll();
+        }
+        
+        if (fog != null) {
+            int columns = fog.getColumns();
+            int viewX = (camera == null) ? 0 : camera.getX();
+            int viewY = (camera == null) ? 0 : camera.getY();
+            
+            for (int i = shownTiles; i < state.getRevealedCount(); i++) {
+                int tile = state.getRevealedTile(i);
+                fog.uncover(tile);
+                dirty.add((tile % columns) * FogGrid.TILE_SIZE - viewX, (tile / columns) * FogGrid.TILE_SIZE - viewY,
+                        FogGrid.TILE_SIZE, FogGrid.TILE_SIZE);
+            }
+            
+            shownTiles = state.getRevealedCount();
+        }
+        
+        if (endAction != null && state.isFinished()) {
+            Runnable action = endAction;
+            endAction = null;
+            dirty.addAll();
+            action.run();
+        }
+    }
+    
+    /**
+     * Returns true if the point is close enough to the ending point to finish
+     * the game.
+     * @param centerX the x coordinate of the player's center
+     * @param centerY the y coordinate of the player's center
+     * @return true if the maze is finished
+     */
+    public boolean isAtEnd(int centerX, int centerY) {
+        return isAtEnd(end, centerX, centerY);
+    }
+    
+    /**
+     * Returns true if the point is close enough to the given ending point to
+     * finish the game.
+     * @param end the top left corner of the ending point
+     * @param centerX the x coordinate of the player's center
+     * @param centerY the y coordinate of the player's center
+     * @return true if the maze is finished
+     */
+    static boolean isAtEnd(Point end, int centerX, int centerY) {
+        // doubled coordinates avoid fractions for an odd END_SIZE
+        long dx = 2L * centerX - (2L * (int) end.getX() + END_SIZE);
+        long dy = 2L * centerY - (2L * (int) end.getY() + END_SIZE);
+        
+        return dx * dx + dy * dy < 4L * END_DISTANCE * END_DISTANCE;
+    }
+    
     /**
      * Displays black tiles (somtimes called "fog of war") to make the maze
      * harder to finish.
      */
-    private void showBlackTiles(final GraphicBoard board, Player player) {
-        for (int y = 0; y < Game.HEIGHT / BLACK_TILE_SIZE; y++) {
-            for (int x = 0; x < Game.WIDTH / BLACK_TILE_SIZE; x++) {
-                final Rectangle tile = new Rectangle(BLACK_TILE_SIZE * x, BLACK_TILE_SIZE * y,
-                        BLACK_TILE_SIZE, BLACK_TILE_SIZE, Color.BLACK, Color.BLACK);
-                
-                new ProximityDetector(player.getGraphics(), tile, UNCOVER_DISTANCE,
-                        ProximityDetector.DistanceType.CENTER_TO_CENTER).setListener(new ProximityListener() {
-                    @Override
-                    public void onProximity() {
-                        board.removeObject(tile);
-                    }
-                });
-                
-                board.addObject(tile);
+    private void showBlackTiles(GraphicBoard board, int worldWidth, int worldHeight) {
+        fog = new FogOfWar(worldWidth, worldHeight);
+        shownTiles = 0;
+        board.addObject(fog.getGraphics());
+    }
+    
+    /**
+     * Displays the maze chunks visible through the camera.
+     * @param scrolled true if the camera moved since the last update
+     */
+    private void updateView(boolean scrolled) {
+        if (!scrolled)
+            return;
+        
+        if (sceneLayer.update(board, camera)) {
+            // new chunks were added on top, so restore the order of the rest
+            player.getGraphics().bringToForeground();
+            
+            if (fog != null)
+                fog.getGraphics().bringToForeground();
+        }
+        
+        if (fog != null)
+            fog.setView(camera.getX(), camera.getY());
+    }
+    
+    /**
+     * Returns the size of the walls texture in one dimension, so that it
+     * covers at least the whole board.
+     * @param imageSize the image size
+     * @param boardSize the board size
+     * @return the texture size
+     */
+    private static int getTextureSize(int imageSize, int boardSize) {
+        return Math.max(imageSize, boardSize);
+    }
+    
+    /**
+     * Returns the background layer divided into chunks.
+     * @return the chunk source or null if there is no background image
+     */
+    private ChunkSource getBackgroundSource() {
+        if (backgroundSource != null)
+            return backgroundSource;
+        
+        BufferedImage image = background.getImage();
+        return (image == null) ? null : new ImageChunkSource(image);
+    }
+    
+    /**
+     * Creates the opaque layer displayed while playing, with the images in
+     * the current display format.
+     */
+    private void createScene() {
+        displayGeneration = DisplayImages.getGeneration();
+        ChunkSource[] layers = {getDisplaySource(backgroundSource, background, null),
+            getDisplaySource(mazeSource, maze, getWalls())};
+        Point endMark = endShown ? end : null;
+        
+        if (backgroundSource != null || mazeSource != null) {
+            int chunkSize = (backgroundSource != null) ? backgroundSource.getChunkSize() : mazeSource.getChunkSize();
+            sceneLayer = new ChunkedLayer(new CompositeChunkSource(layers, endMark, chunkSize));
+        } else {
+            if (scene == null || sceneGeneration != displayGeneration) {
+                scene = new CompositeChunkSource(layers, endMark, ImageChunkSource.CHUNK_SIZE)
+                        .render(0, 0, getWorldWidth(), getWorldHeight());
+                sceneGeneration = displayGeneration;
             }
+            
+            sceneLayer = new ChunkedLayer(new ImageChunkSource(scene));
         }
     }
     
     /**
-     * Registers the action to perform when the maze is finisehd successfully.
-     * @param board the board to use
-     * @param player the player
-     * @param endAction the action to perform
+     * Returns one layer of the maze divided into chunks, with the images
+     * in the current display format.
+     * @param tiledSource the source of a tiled maze, whose tiles are already
+     * converted when decoded, or null
+     * @param object the object containing the whole image
+     * @param extent the wall mask whose size the image is repeated to fill,
+     * so that the displayed walls match the collisions, or null if the image
+     * is not repeated
+     * @return the chunk source or null if there is no image
      */
-    private void registerEndAction(GraphicBoard board, Player player, final Runnable endAction) {
-        Color transparent = new Color(0, 0, 0, 0);
-        Rectangle endRectangle = new Rectangle((int) end.getX(), (int) end.getY(), END_SIZE, END_SIZE,
-                transparent, transparent);
+    private static ChunkSource getDisplaySource(ChunkSource tiledSource, GraphicObject object,
+            CollisionMask extent) {
+        if (tiledSource != null)
+            return tiledSource;
         
-        new ProximityDetector(player.getGraphics(), endRectangle, END_DISTANCE,
-                ProximityDetector.DistanceType.CENTER_TO_CENTER).setListener(new ProximityListener() {
-            @Override
-            public void onProximity() {
-                if (endAction != null)
-                    endAction.run();
+        BufferedImage image = DisplayImages.prepare(object.getImage());
+        
+        if (image == null)
+            return null;
+        
+        if (extent != null && (extent.getWidth() > image.getWidth() || extent.getHeight() > image.getHeight())) {
+            int width = Math.max(extent.getWidth(), image.getWidth());
+            int height = Math.max(extent.getHeight(), image.getHeight());
+            BufferedImage texture = DisplayImages.create(width, height, image.getTransparency());
+            Graphics2D graphics = texture.createGraphics();
+            
+            for (int y = 0; y < height; y += image.getHeight()) {
+                for (int x = 0; x < width; x += image.getWidth())
+                    graphics.drawImage(image, x, y, null);
             }
-        });
+            
+            graphics.dispose();
+            image = texture;
+        }
+        
+        return new ImageChunkSource(image);
+    }
+    
+    /**
+     * Returns the layer of the maze "walls" divided into chunks.
+     * @return the chunk source or null if there is no walls image
+     */
+    private ChunkSource getMazeSource() {
+        if (mazeSource != null)
+            return mazeSource;
+        
+        BufferedImage image = maze.getImage();
+        return (image == null) ? null : new ImageChunkSource(image);
+    }
+    
+    private static int getWidth(ChunkSource source) {
+        return (source == null) ? 0 : source.getWidth();
+    }
+    
+    private static int getHeight(ChunkSource source) {
+        return (source == null) ? 0 : source.getHeight();
     }
 }
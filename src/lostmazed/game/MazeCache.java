@@ -0,0 +1,227 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decoded mazes, so that a maze loaded repeatedly from the same
+ * file or resource is decoded only once.
+ *
+ * The least recently used mazes are evicted when the total number of
+ * decoded pixels exceeds the limit.
+ * @author Matúš Sulír
+ */
+public class MazeCache {
+    /**
+     * The default limit of decoded pixels (about 32 MB of ARGB data).
+     */
+    public static final long DEFAULT_MAX_PIXELS = 8 * 1024 * 1024;
+
+    private final long maxPixels;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long pixels;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs an empty cache.
+     * @param maxPixels the maximal number of decoded pixels held
+     */
+    public MazeCache(long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Returns the key identifying a file together with its current version.
+     * @param file the maze file
+     * @return the cache key
+     * @throws IOException when the file path could not be resolved
+     */
+    public static String getKey(File file) throws IOException {
+        return "file:" + file.getCanonicalPath() + ":" + file.lastModified() + ":" + file.length();
+    }
+
+    /**
+     * Returns the key identifying a class path resource.
+     * @param name the resource name
+     * @return the cache key
+     */
+    public static String getKey(String name) {
+        return "resource:" + name;
+    }
+
+    /**
+     * Returns the cached maze data.
+     * @param key the cache key
+     * @return the data or null if they are not cached
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry == null)
+            misses++;
+        else
+            hits++;
+
+        return entry;
+    }
+
+    /**
+     * Adds the maze data to the cache, evicting the least recently used
+     * entries if necessary.
+     * @param key the cache key
+     * @param entry the maze data
+     */
+    synchronized void put(String key, Entry entry) {
+        if (entry.getPixels() > maxPixels)
+            return;
+
+        Entry previous = entries.put(key, entry);
+
+        if (previous != null)
+            pixels -= previous.getPixels();
+
+        pixels += entry.getPixels();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+        while (pixels > maxPixels && iterator.hasNext()) {
+            pixels -= iterator.next().getValue().getPixels();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes all versions of a file, e.g. before the file is replaced.
+     * @param file the maze file
+     * @throws IOException when the file path could not be resolved
+     */
+    public synchronized void remove(File file) throws IOException {
+        String prefix = "file:" + file.getCanonicalPath() + ":";
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+
+            if (entry.getKey().startsWith(prefix)) {
+                pixels -= entry.getValue().getPixels();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        pixels = 0;
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of unsuccessful lookups.
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of decoded pixels currently held.
+     * @return the pixel count
+     */
+    public synchronized long getPixels() {
+        return pixels;
+    }
+
+    /**
+     * The decoded data of one maze, shared by all mazes created from it.
+     */
+    static class Entry {
+        private final BufferedImage background;
+        private final BufferedImage maze;
+        private final Point start;
+        private final Point end;
+        private final MazeCollisions collisions;
+
+        /**
+         * Constructs the entry.
+         * @param background the background image
+         * @param maze the maze "walls" image
+         * @param start the starting point
+         * @param end the ending point
+         * @param collisions the collision data
+         */
+        Entry(BufferedImage background, BufferedImage maze, Point start, Point end, MazeCollisions collisions) {
+            this.background = background;
+            this.maze = maze;
+            this.start = new Point(start);
+            this.end = new Point(end);
+            this.collisions = collisions;
+        }
+
+        BufferedImage getBackground() {
+            return background;
+        }
+
+        BufferedImage getMaze() {
+            return maze;
+        }
+
+        Point getStart() {
+            return new Point(start);
+        }
+
+        Point getEnd() {
+            return new Point(end);
+        }
+
+        MazeCollisions getCollisions() {
+            return collisions;
+        }
+
+        /**
+         * Returns the number of pixels of both images.
+         * @return the pixel count
+         */
+        long getPixels() {
+            return (long) background.getWidth() * background.getHeight()
+                    + (long) maze.getWidth() * maze.getHeight();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * The wall mask of a maze together with the collision data derived from it.
+ *
+ * The derived data are computed on demand and can be shared by all mazes
+ * with the same walls. For very large mazes, the derived data would take too
+ * much memory, so the footprint is tested against the walls directly.
+ * @author Matúš Sulír
+ */
+public class MazeCollisions {
+    /**
+     * The maximal number of pixels of a maze for which the dilated collision
+     * mask and the distance field are computed.
+     */
+    public static final long DERIVED_DATA_LIMIT = 16 * 1024 * 1024;
+
+    private final CollisionMask walls;
+    private CollisionMask collisionMask;
+    private DistanceField distanceField;
+    private Footprint footprint;
+
+    /**
+     * Constructs the collision data.
+     * @param walls the mask of all wall pixels
+     */
+    public MazeCollisions(CollisionMask walls) {
+        this.walls = walls;
+    }
+
+    /**
+     * Returns the mask of all wall pixels.
+     * @return the wall mask
+     */
+    public CollisionMask getWalls() {
+        return walls;
+    }
+
+    /**
+     * Returns the positions where the sprite with the given footprint would
+     * collide with the walls.
+     * @param footprint the footprint of the sprite
+     * @return the dilated collision mask, or a direct footprint test for a
+     * very large maze
+     */
+    public Obstacles getObstacles(Footprint footprint) {
+        if (hasDerivedData())
+            return getCollisionMask(footprint);
+        else
+            return new FootprintObstacles(walls, footprint);
+    }
+
+    /**
+     * Returns the mask of positions where the sprite with the given footprint
+     * would collide with the walls.
+     *
+     * The mask is computed once and reused as long as the footprint stays the
+     * same.
+     * @param footprint the footprint of the sprite
+     * @return the collision mask
+     */
+    public synchronized CollisionMask getCollisionMask(Footprint footprint) {
+        if (collisionMask == null || this.footprint != footprint) {
+            collisionMask = walls.dilate(footprint);
+            distanceField = null;
+            this.footprint = footprint;
+        }
+
+        return collisionMask;
+    }
+
+    /**
+     * Returns the distance field of the collision mask for the given
+     * footprint.
+     * @param footprint the footprint of the sprite
+     * @return the distance field, or null for a very large maze
+     */
+    public synchronized DistanceField getDistanceField(Footprint footprint) {
+        if (!hasDerivedData())
+            return null;
+
+        CollisionMask mask = getCollisionMask(footprint);
+
+        if (distanceField == null)
+            distanceField = new DistanceField(mask);
+
+        return distanceField;
+    }
+
+    /**
+     * Returns true if the maze is small enough to compute the derived data.
+     * @return true if the derived data are available
+     */
+    private boolean hasDerivedData() {
+        return (long) walls.getWidth() * walls.getHeight() <= DERIVED_DATA_LIMIT;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * The result of solving a maze: whether it can be finished and the shortest
+ * path of the player if it can.
+ * @author Matúš Sulír
+ */
+public class MazeSolution {
+    private final int[] xs;
+    private final int[] ys;
+
+    /**
+     * Constructs the solution.
+     * @param xs the x coordinates of the path, or null if there is no path
+     * @param ys the y coordinates of the path, or null if there is no path
+     */
+    MazeSolution(int[] xs, int[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+    }
+    
+    /**
+     * Returns true if the end can be reached from the start.
+     * @return true if the maze is solvable
+     */
+    public boolean isSolvable() {
+        return xs != null;
+    }
+    
+    /**
+     * Returns the number of steps of the shortest path. Each step moves the
+     * player by one pixel horizontally, vertically or diagonally.
+     * @return the path length, or -1 if the maze is not solvable
+     */
+    public int getLength() {
+        return (xs == null) ? -1 : xs.length - 1;
+    }
+    
+    /**
+     * Returns the x coordinate of the sprite's top left corner at the
+     * specified point of the path.
+     * @param index the point index, from 0 (start) to the length (end)
+     * @return the x coordinate
+     */
+    public int getX(int index) {
+        return xs[index];
+    }
+    
+    /**
+     * Returns the y coordinate of the sprite's top left corner at the
+     * specified point of the path.
+     * @param index the point index, from 0 (start) to the length (end)
+     * @return the y coordinate
+     */
+    public int getY(int index) {
+        return ys[index];
+    }
+}
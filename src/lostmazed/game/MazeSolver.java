@@ -0,0 +1,181 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Point;
+
+/**
+ * Finds the shortest path of the player from the start to the end of a maze
+ * without playing it.
+ *
+ * The search is a breadth-first search over all pixel positions of the
+ * sprite's top left corner. The player moves horizontally, vertically, or
+ * diagonally by one pixel at a time. A diagonal move is possible only if the
+ * horizontal part of it is possible too, because the game moves the player
+ * along the x axis first.
+ * @author Matúš Sulír
+ */
+public class MazeSolver {
+    private static final int[] X_STEPS = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] Y_STEPS = {0, 0, 1, -1, 1, -1, 1, -1};
+    
+    // states of a position; visited positions store the index of the step leading there, plus one
+    private static final byte UNKNOWN = 0;
+    private static final byte BLOCKED = -1;
+    private static final byte FREE = -2;
+    private static final byte STARTING = 9;
+    
+    private final Obstacles obstacles;
+    private final int columns;
+    private final int rows;
+    private final int centerX;
+    private final int centerY;
+
+    /**
+     * Constructs a solver for a maze.
+     * 
+     * The whole sprite must stay inside the maze.
+     * @param obstacles the positions where the sprite collides with the walls
+     * @param worldWidth the maze width
+     * @param worldHeight the maze height
+     * @param footprint the footprint of the player sprite
+     */
+    public MazeSolver(Obstacles obstacles, int worldWidth, int worldHeight, Footprint footprint) {
+        this.obstacles = obstacles;
+        columns = Math.max(0, worldWidth - footprint.getWidth() + 1);
+        rows = Math.max(0, worldHeight - footprint.getHeight() + 1);
+        centerX = footprint.getWidth() / 2;
+        centerY = footprint.getHeight() / 2;
+    }
+    
+    /**
+     * Finds the shortest path from the start to the end.
+     * @param start the starting position of the sprite's top left corner
+     * @param end the top left corner of the ending point
+     * @return the solution, which is unsolvable if there is no path
+     */
+    public MazeSolution solve(Point start, Point end) {
+        int startX = (int) start.getX();
+        int startY = (int) start.getY();
+        
+        if (startX < 0 || startY < 0 || startX >= columns || startY >= rows)
+            return new MazeSolution(null, null);
+        
+        byte[] states = new byte[columns * rows];
+        int[] queue = new int[columns * rows];
+        int head = 0;
+        int tail = 0;
+        int startIndex = startY * columns + startX;
+        
+        if (!isFree(states, startX, startY))
+            return new MazeSolution(null, null);
+        
+        states[startIndex] = STARTING;
+        queue[tail++] = startIndex;
+        
+        while (head < tail) {
+            int index = queue[head++];
+            int x = index % columns;
+            int y = index / columns;
+            
+            if (Maze.isAtEnd(end, x + centerX, y + centerY))
+                return createSolution(states, x, y);
+            
+            for (int step = 0; step < X_STEPS.length; step++) {
+                int nextX = x + X_STEPS[step];
+                int nextY = y + Y_STEPS[step];
+                
+                if (!isFree(states, nextX, nextY) || states[nextY * columns + nextX] > 0)
+                    continue;
+                
+                if (nextX != x && nextY != y && !isFree(states, nextX, y))
+                    continue;
+                
+                states[nextY * columns + nextX] = (byte) (step + 1);
+                queue[tail++] = nextY * columns + nextX;
+            }
+        }
+        
+        return new MazeSolution(null, null);
+    }
+    
+    /**
+     * Returns true if the sprite can be at the given position.
+     * 
+     * The result is remembered in the states, because the obstacles can be
+     * slow to query.
+     * @param states the states of all positions
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if the position is inside the maze and not blocked
+     */
+    private boolean isFree(byte[] states, int x, int y) {
+        if (x < 0 || y < 0 || x >= columns || y >= rows)
+            return false;
+        
+        int index = y * columns + x;
+        
+        if (states[index] == UNKNOWN)
+            states[index] = obstacles.isBlocked(x, y) ? BLOCKED : FREE;
+        
+        return states[index] != BLOCKED;
+    }
+    
+    /**
+     * Follows the steps back from the end to the start.
+     * @param states the states of all positions
+     * @param endX the x coordinate of the reached end
+     * @param endY the y coordinate of the reached end
+     * @return the solution with the path from the start to the end
+     */
+    private MazeSolution createSolution(byte[] states, int endX, int endY) {
+        int length = 0;
+        int x = endX;
+        int y = endY;
+        
+        for (byte state = states[y * columns + x]; state != STARTING; state = states[y * columns + x]) {
+            x -= X_STEPS[state - 1];
+            y -= Y_STEPS[state - 1];
+            length++;
+        }
+        
+        int[] xs = new int[length + 1];
+        int[] ys = new int[length + 1];
+        x = endX;
+        y = endY;
+        
+        for (int i = length; i >= 0; i--) {
+            xs[i] = x;
+            ys[i] = y;
+            
+            if (i > 0) {
+                byte state = states[y * columns + x];
+                x -= X_STEPS[state - 1];
+                y -= Y_STEPS[state - 1];
+            }
+        }
+        
+        return new MazeSolution(xs, ys);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import soga2d.GraphicBoard;
+
+/**
+ * Statistics about the game loop: the duration of ticks, the number of
+ * collision tests per tick, the time spent waiting for and holding the board
+ * lock, and the number of ticks which were dropped because the clock was
+ * late.
+ *
+ * The metrics are recorded only if the system property
+ * <code>lostmazed.metrics</code> is set to <code>true</code> or
+ * <code>overlay</code>; the latter also shows them on the screen while
+ * playing. Because the switch is a constant, the disabled instrumentation is
+ * removed by the JIT compiler. The metrics are available over JMX as
+ * <code>lostmazed:type=Metrics</code>.
+ * @author Matúš Sulír
+ */
+public class Metrics implements MetricsMBean {
+    /**
+     * True if the metrics are recorded.
+     */
+    public static final boolean ENABLED;
+    
+    /**
+     * True if the metrics are shown on the screen.
+     */
+    public static final boolean OVERLAY;
+    
+    private static final Histogram tickTime = new Histogram();
+    private static final Histogram collisionTests = new Histogram();
+    private static final Histogram lockWait = new Histogram();
+    private static final Histogram lockHold = new Histogram();
+    private static final AtomicLong framesDropped = new AtomicLong();
+    
+    static {
+        String setting = System.getProperty("lostmazed.metrics", "false");
+        OVERLAY = setting.equals("overlay");
+        ENABLED = OVERLAY || setting.equals("true");
+        
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(),
+                        new ObjectName("lostmazed:type=Metrics"));
+            } catch (JMException ex) {
+                Logger.getLogger(Metrics.class.getName()).log(Level.WARNING,
+                        "The metrics could not be registered", ex);
+            }
+        }
+    }
+    
+    /**
+     * Records the duration of one tick.
+     * @param nanoseconds the time spent by all tick listeners
+     */
+    public static void recordTick(long nanoseconds) {
+        tickTime.record(nanoseconds);
+    }
+    
+    /**
+     * Records the number of collision tests performed during one tick.
+     * @param count the number of tests
+     */
+    public static void recordCollisionTests(int count) {
+        collisionTests.record(count);
+    }
+    
+    /**
+     * Records ticks which were not performed in time.
+     * @param count the number of dropped ticks
+     */
+    public static void recordFramesDropped(long count) {
+        framesDropped.addAndGet(count);
+    }
+    
+    /**
+     * Locks the board, measuring the time spent waiting for the lock if the
+     * metrics are enabled.
+     * @param board the board to lock
+     * @return the time when the lock was acquired, to be passed to
+     * {@link #unlock(GraphicBoard, long)}
+     */
+    public static long lock(GraphicBoard board) {
+        if (!ENABLED) {
+            board.lock();
+            return 0;
+        }
+        
+        long start = System.nanoTime();
+        board.lock();
+        long acquired = System.nanoTime();
+        
+        lockWait.record(acquired - start);
+        return acquired;
+    }
+    
+    /**
+     * Unlocks the board, measuring the time the lock was held if the metrics
+     * are enabled.
+     * @param board the board to unlock
+     * @param acquired the value returned by {@link #lock(GraphicBoard)}
+     */
+    public static void unlock(GraphicBoard board, long acquired) {
+        if (ENABLED)
+            lockHold.record(System.nanoTime() - acquired);
+        
+        board.unlock();
+    }
+    
+    /**
+     * Returns the metrics as a short multi-line text.
+     * @return the text
+     */
+    public static String getSummary() {
+        return String.format("tick p50 %.0f us, p99 %.0f us, max %.0f us%n"
+                + "collision tests mean %.1f, p99 %d%n"
+                + "lock wait p99 %.0f us, hold p99 %.0f us%n"
+                + "frames dropped %d",
+                toMicros(tickTime.getPercentile(50)), toMicros(tickTime.getPercentile(99)),
+                toMicros(tickTime.getMax()), collisionTests.getMean(), collisionTests.getPercentile(99),
+                toMicros(lockWait.getPercentile(99)), toMicros(lockHold.getPercentile(99)),
+                framesDropped.get());
+    }
+    
+    @Override
+    public long getTickCount() {
+        return tickTime.getCount();
+    }
+    
+    @Override
+    public double getTickTimeMedian() {
+        return toMicros(tickTime.getPercentile(50));
+    }
+    
+    @Override
+    public double getTickTime99thPercentile() {
+        return toMicros(tickTime.getPercentile(99));
+    }
+    
+    @Override
+    public double getTickTimeMax() {
+        return toMicros(tickTime.getMax());
+    }
+    
+    @Override
+    public double getCollisionTestsMean() {
+        return collisionTests.getMean();
+    }
+    
+    @Override
+    public long getCollisionTests99thPercentile() {
+        return collisionTests.getPercentile(99);
+    }
+    
+    @Override
+    public double getLockWait99thPercentile() {
+        return toMicros(lockWait.getPercentile(99));
+    }
+    
+    @Override
+    public double getLockHold99thPercentile() {
+        return toMicros(lockHold.getPercentile(99));
+    }
+    
+    @Override
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+    
+    @Override
+    public long getTimeToMenu() {
+        return StartupTimes.getTimeToMenu();
+    }
+    
+    @Override
+    public long getTimeToFirstFrame() {
+        return StartupTimes.getTimeToFirstFrame();
+    }
+    
+    @Override
+    public void reset() {
+        tickTime.reset();
+        collisionTests.reset();
+        lockWait.reset();
+        lockHold.reset();
+        framesDropped.set(0);
+    }
+    
+    private static double toMicros(long nanoseconds) {
+        return nanoseconds / 1000.0;
+    }
+}
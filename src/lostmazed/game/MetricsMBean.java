@@ -0,0 +1,102 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+/**
+ * The management interface of the game metrics. Times are in microseconds.
+ * @author Matúš Sulír
+ */
+public interface MetricsMBean {
+    /**
+     * Returns the number of recorded ticks.
+     * @return the tick count
+     */
+    long getTickCount();
+    
+    /**
+     * Returns the median duration of a tick.
+     * @return the time in microseconds
+     */
+    double getTickTimeMedian();
+    
+    /**
+     * Returns the 99th percentile of the tick duration.
+     * @return the time in microseconds
+     */
+    double getTickTime99thPercentile();
+    
+    /**
+     * Returns the longest tick duration.
+     * @return the time in microseconds
+     */
+    double getTickTimeMax();
+    
+    /**
+     * Returns the mean number of collision tests per tick while moving.
+     * @return the number of tests
+     */
+    double getCollisionTestsMean();
+    
+    /**
+     * Returns the 99th percentile of collision tests per tick while moving.
+     * @return the number of tests
+     */
+    long getCollisionTests99thPercentile();
+    
+    /**
+     * Returns the 99th percentile of the time spent waiting for the board lock.
+     * @return the time in microseconds
+     */
+    double getLockWait99thPercentile();
+    
+    /**
+     * Returns the 99th percentile of the time the board lock was held.
+     * @return the time in microseconds
+     */
+    double getLockHold99thPercentile();
+    
+    /**
+     * Returns the number of ticks skipped because the clock was late.
+     * @return the tick count
+     */
+    long getFramesDropped();
+    
+    /**
+     * Returns the time from the launch until the menu was painted.
+     * @return the time in milliseconds, or -1 if not painted yet
+     */
+    long getTimeToMenu();
+    
+    /**
+     * Returns the time from the launch until the first frame of a game was
+     * painted.
+     * @return the time in milliseconds, or -1 if no game was played yet
+     */
+    long getTimeToFirstFrame();
+    
+    /**
+     * Removes all recorded values except the startup times.
+     */
+    void reset();
+}
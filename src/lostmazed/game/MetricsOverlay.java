@@ -0,0 +1,87 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.awt.Font;
+import soga2d.GraphicBoard;
+import soga2d.objects.Text;
+
+/**
+ * Shows the game metrics in the top left corner of the board.
+ * @author Matúš Sulír
+ */
+public class MetricsOverlay implements TickListener {
+    private static final Font FONT = new Font("Monospaced", Font.PLAIN, 11);
+    private static final int UPDATE_TICKS = 25;
+    
+    private final GraphicBoard board;
+    private Text[] lines = new Text[0];
+    private int ticks;
+    private final Runnable updater = new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    };
+
+    /**
+     * Constructs the overlay.
+     * @param board the board to show the metrics on
+     */
+    public MetricsOverlay(GraphicBoard board) {
+        this.board = board;
+    }
+    
+    /**
+     * Requests an update of the text a few times per second.
+     * @return false, because the overlay does not need ticks by itself
+     */
+    @Override
+    public boolean onTick() {
+        if (ticks++ % UPDATE_TICKS == 0)
+            EventQueue.invokeLater(updater);
+        
+        return false;
+    }
+    
+    /**
+     * Replaces the text by the current metrics. Called on the event dispatch
+     * thread, like all other board updates while playing.
+     */
+    private void update() {
+        String[] summary = Metrics.getSummary().split("\\r?\\n");
+        
+        board.lock();
+        board.removeObjects(lines);
+        lines = new Text[summary.length];
+        
+        for (int i = 0; i < summary.length; i++)
+            lines[i] = new Text(summary[i], 5, 5 + 14 * i, FONT, Color.YELLOW);
+        
+        board.addObjects(lines);
+        board.unlock();
+    }
+}
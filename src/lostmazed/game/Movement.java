@@ -0,0 +1,217 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+
+/**
+ * The movement rules of the player, independent of any graphics.
+ *
+ * The arrow keys set the speed in each direction. On every tick, the
+ * position changes by the speed unless a wall is in the way, in which case
+ * the player moves as close to the wall as possible. The movement must be
+ * used from one thread only; the game uses the clock thread.
+ * @author Matúš Sulír
+ */
+public class Movement {
+    private final Obstacles obstacles;
+    private final DistanceField distanceField;
+    private double xSpeed;
+    private double ySpeed;
+    private double positionX;
+    private double positionY;
+    private int collisionTests;
+
+    /**
+     * Constructs the movement in a maze.
+     * @param obstacles the positions where the player collides with the walls
+     * @param distanceField the distance field of the obstacles, or null to
+     * test each pixel separately
+     */
+    public Movement(Obstacles obstacles, DistanceField distanceField) {
+        this.obstacles = obstacles;
+        this.distanceField = distanceField;
+    }
+    
+    /**
+     * Moves the player to the specified location.
+     * @param point the location of the player's top left corner
+     */
+    public void placeTo(Point point) {
+        positionX = point.getX();
+        positionY = point.getY();
+    }
+    
+    /**
+     * Changes the speed according to a pressed or released arrow key.
+     * Other keys are ignored.
+     * @param keyCode the key code from {@link KeyEvent}
+     * @param pressed true if the key was pressed, false if released
+     * @return true if the speed changed
+     */
+    public boolean setKey(int keyCode, boolean pressed) {
+        double newSpeed = pressed ? Player.SPEED : 0;
+        double oldXSpeed = xSpeed;
+        double oldYSpeed = ySpeed;
+        
+        switch (keyCode) {
+            case KeyEvent.VK_UP:
+                ySpeed = -newSpeed;
+                break;
+            case KeyEvent.VK_DOWN:
+                ySpeed = newSpeed;
+                break;
+            case KeyEvent.VK_LEFT:
+                xSpeed = -newSpeed;
+                break;
+            case KeyEvent.VK_RIGHT:
+                xSpeed = newSpeed;
+                break;
+        }
+        
+        return xSpeed != oldXSpeed || ySpeed != oldYSpeed;
+    }
+    
+    /**
+     * Returns true if any arrow key is pressed.
+     * @return true if the player is moving
+     */
+    public boolean isMoving() {
+        return xSpeed != 0 || ySpeed != 0;
+    }
+    
+    /**
+     * Moves the player by the current speed if there is no wall in the way.
+     * 
+     * The movement in each direction is independent, so the player slides
+     * along a wall when moving diagonally.
+     * @return true if the integer position changed
+     */
+    public boolean step() {
+        double deltaX = xSpeed;
+        double deltaY = ySpeed;
+        
+        if (deltaX == 0 && deltaY == 0)
+            return false;
+        
+        int startX = getX();
+        int startY = getY();
+        
+        positionX = moveAlong(positionX, deltaX, startY, true);
+        positionY = moveAlong(positionY, deltaY, getX(), false);
+        
+        return getX() != startX || getY() != startY;
+    }
+    
+    /**
+     * Returns the x coordinate of the player's top left corner.
+     * @return the x coordinate in the maze
+     */
+    public int getX() {
+        return (int) Math.floor(positionX);
+    }
+    
+    /**
+     * Returns the y coordinate of the player's top left corner.
+     * @return the y coordinate in the maze
+     */
+    public int getY() {
+        return (int) Math.floor(positionY);
+    }
+    
+    /**
+     * Returns the number of collision tests since the last call, if the
+     * metrics are enabled.
+     * @return the number of distance field and obstacle queries
+     */
+    public int takeCollisionTests() {
+        int count = collisionTests;
+        collisionTests = 0;
+        return count;
+    }
+    
+    /**
+     * Returns the angle of the player's image according to the current moving
+     * direction.
+     * @return the angle in degrees, or -1 if the player is not moving
+     */
+    public int getAngle() {
+        // add one to the direction (-1, 0 or 1) obtain an array index
+        int xDirection = (int) Math.signum(xSpeed) + 1;
+        int yDirection = (int) Math.signum(ySpeed) + 1;
+        
+        int[][] angles = {
+            {-45, 0, 45},
+            {-90, -1, 90},
+            {-135, 180, 135}
+        };
+        
+        return angles[yDirection][xDirection];
+    }
+    
+    /**
+     * Moves along one axis as far as the walls allow.
+     * 
+     * The distance field tells how far the player can safely move at once,
+     * so only a few queries are necessary regardless of the speed.
+     * @param position the current coordinate on the axis
+     * @param delta the requested movement
+     * @param other the current integer coordinate on the other axis
+     * @param horizontal true for the x axis, false for the y axis
+     * @return the new coordinate on the axis
+     */
+    private double moveAlong(double position, double delta, int other, boolean horizontal) {
+        double wanted = position + delta;
+        int current = (int) Math.floor(position);
+        int target = (int) Math.floor(wanted);
+        int step = Integer.signum(target - current);
+        
+        while (current != target) {
+            int x = horizontal ? current : other;
+            int y = horizontal ? other : current;
+            int freeSteps = (distanceField == null) ? 0 : distanceField.getFreeSteps(x, y);
+            
+            if (Metrics.ENABLED && distanceField != null)
+                collisionTests++;
+            
+            if (freeSteps == 0) {
+                if (Metrics.ENABLED)
+                    collisionTests++;
+                
+                boolean blocked = horizontal ? obstacles.isBlocked(x + step, y)
+                        : obstacles.isBlocked(x, y + step);
+                
+                if (blocked)
+                    return current;
+                
+                freeSteps = 1;
+            }
+            
+            current += step * Math.min(freeSteps, Math.abs(target - current));
+        }
+        
+        return wanted;
+    }
+}
@@ -23,39 +23,80 @@
  */
 package lostmazed.game;
 
+import java.awt.AlphaComposite;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Transparency;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import soga2d.GraphicBoard;
 import soga2d.GraphicObject;
 import soga2d.events.KeyListener;
-import soga2d.objects.Animation;
+import soga2d.objects.Picture;
 
 /**
  * The player who wants to get out of the maze.
+ * 
+ * The game rules are evaluated by a {@link Simulation} on the clock thread,
+ * which never touches the board. After each tick, the simulation publishes
+ * an immutable {@link GameState}, and the event dispatch thread displays the
+ * latest one. So the board lock is taken only by the thread which also
+ * paints the board, and a slow repaint can not delay a tick or vice versa.
+ * 
+ * The sprite is displayed from the {@link SpriteAtlas}, so turning and
+ * animating only copy a prepared frame into the sprite's image.
  * @author Matúš Sulír
  */
 public class Player {
+    private static final int FRAME_DELAY = 150;
+    
+    /**
+     * The player's speed in pixels per clock tick.
+     */
+    public static final double SPEED = 2;
+    
     private GraphicBoard board;
-    private Animation player;
+    private final SpriteAtlas atlas;
+    private final BufferedImage sprite;
+    private Picture player;
+    private BufferedImage shownFrame;
+    private long animationStart;
     private Maze maze;
-    private int xSpeed;
-    private int ySpeed;
+    private final Simulation simulation;
+    private GameClock clock;
+    private final Queue<KeyEvent> keys = new ConcurrentLinkedQueue<KeyEvent>();
+    private final InputLog inputLog = new InputLog();
+    private volatile GameState state;
+    private GameState shownState;
+    private final AtomicBoolean renderPending = new AtomicBoolean();
+    private final Runnable renderer = new Runnable() {
+        @Override
+        public void run() {
+            render();
+        }
+    };
     
     /**
-     * Loads the graphics, initializes the player and adds him to the board.
+     * Prepares the graphics, initializes the player and adds him to the board.
      * @param board the board to add the player to
      * @param maze the maze which the player will play
+     * @param clock the clock which will move the player
      * @throws IOException when player animation can not be loaded
      */
-    public Player(GraphicBoard board, Maze maze) throws IOException {
+    public Player(GraphicBoard board, Maze maze, GameClock clock) throws IOException {
         this.board = board;
         this.maze = maze;
+        this.clock = clock;
+        simulation = new Simulation(maze);
         
-        player = new Animation(150, "lostmazed/res/player.png", "lostmazed/res/player_2.png",
-                "lostmazed/res/player_3.png");
+        atlas = SpriteAtlas.getPlayer();
+        sprite = DisplayImages.create(atlas.getCellSize(), atlas.getCellSize(), Transparency.TRANSLUCENT);
+        player = new Picture(sprite);
         board.addObject(player);
 
         player.setKeyListener(new KeyListener() {
@@ -65,20 +106,29 @@ public class Player {
             }
         });
         
-        new Timer().scheduleAtFixedRate(new TimerTask() {
+        clock.addListener(new TickListener() {
             @Override
-            public void run() {
-                onTimer();
+            public boolean onTick() {
+                return onTimer();
             }
-        }, 20, 20);
+        });
+        
+        if (Metrics.OVERLAY)
+            clock.addListener(new MetricsOverlay(board));
     }
     
     /**
-     * Moves the player to the specified location.
+     * Moves the player to the specified location and displays it
+     * immediately. The caller must hold the board lock.
      * @param point the location to move the player
      */
     public void placeTo(Point point) {
-        player.moveTo((int) point.getX(), (int) point.getY());
+        synchronized (simulation) {
+            simulation.placeTo(point);
+            state = simulation.getState();
+        }
+        
+        show(state, new DirtyRegion());
     }
     
     /**
@@ -91,108 +141,194 @@ public class Player {
     }
     
     /**
-     * Called periodically to move the player if needed.
+     * Returns the footprint of the player sprite in all directions, loading
+     * the sprite when called for the first time.
+     * @return the footprint shared by all players
+     * @throws IOException when the player image can not be loaded
      */
-    private void onTimer() {
-        tryToMove(xSpeed, ySpeed);
+    public static Footprint getFootprint() throws IOException {
+        return SpriteAtlas.getPlayer().getFootprint();
     }
     
     /**
-     * React to key events by moving the player.
-     * @param event the key event
+     * Returns the log of the player's key presses, which can be replayed by
+     * a {@link Simulation}.
+     * @return the input log
      */
-    private void onKey(KeyEvent event) {
-        int eventType = event.getID();
-        boolean wasMoving = (xSpeed != 0 || ySpeed != 0);
+    public InputLog getInputLog() {
+        return inputLog;
+    }
+    
+    /**
+     * Called periodically to apply the pressed keys, simulate the tick and
+     * publish the new state if anything changed.
+     * 
+     * The keys take effect only at the beginning of a tick, so the run does
+     * not depend on the exact time of the key events and can be reproduced
+     * from the input log.
+     * @return true if the player is moving
+     */
+    private boolean onTimer() {
+        GameState newState;
+        boolean isMoving;
         
-        if (eventType == KeyEvent.KEY_PRESSED || eventType == KeyEvent.KEY_RELEASED) {
-            int newSpeed = 0;
+        synchronized (simulation) {
+            boolean wasMoving = simulation.isMoving();
+            KeyEvent event;
             
-            if (eventType == KeyEvent.KEY_PRESSED)
-                newSpeed = 2;
-            
-            switch (event.getKeyCode()) {
-                case KeyEvent.VK_UP:
-                    ySpeed = -newSpeed;
-                    break;
-                case KeyEvent.VK_DOWN:
-                    ySpeed = newSpeed;
-                    break;
-                case KeyEvent.VK_LEFT:
-                    xSpeed = -newSpeed;
-                    break;
-                case KeyEvent.VK_RIGHT:
-                    xSpeed = newSpeed;
-                    break;
+            while ((event = keys.poll()) != null) {
+                boolean pressed = (event.getID() == KeyEvent.KEY_PRESSED);
+                
+                if (simulation.setKey(event.getKeyCode(), pressed))
+                    inputLog.record(simulation.getTicks(), event.getKeyCode(), pressed);
             }
+            
+            isMoving = simulation.isMoving();
+            boolean moved = simulation.tick();
+            
+            if (!moved && !wasMoving && !isMoving)
+                return false;
+            
+            if (Metrics.ENABLED)
+                Metrics.recordCollisionTests(simulation.takeCollisionTests());
+            
+            newState = simulation.getState();
         }
         
-        boolean isMoving = (xSpeed != 0 || ySpeed != 0);
+        state = newState;
         
-        if (!wasMoving && isMoving)
-            player.start();
+        if (renderPending.compareAndSet(false, true))
+            EventQueue.invokeLater(renderer);
         
-        if (wasMoving && !isMoving)
-            player.stop();
+        return isMoving;
     }
     
     /**
-     * Moves the player if there is no wall in the current direction.
+     * Displays the latest published state, skipping the older ones.
      * 
-     * If there is a wall, moves the player as close to the wall as possible.
-     * @param deltaX the number of pixels to move in x direction
-     * @param deltaY the number of pixels to move in y direction
+     * Only the parts of the board which changed are repainted: the old and
+     * new place of the sprite and the uncovered black tiles, unless the view
+     * scrolled.
      */
-    private void tryToMove(int deltaX, int deltaY) {
-        if (deltaX != 0 || deltaY != 0) {
-            board.lock();
-
-            int xStep = Integer.signum(deltaX);
-
-            for (int x = xStep; x != deltaX; x += xStep) {
-                player.moveBy(xStep, 0);
-
-                if (player.collidesWith(maze.getMaze())) {
-                    player.moveBy(-xStep, 0);
-                    break;
-                }
-            }
-
-            int yStep = Integer.signum(deltaY);
-
-            for (int y = yStep; y != deltaY; y += yStep) {
-                player.moveBy(0, yStep);
-
-                if (player.collidesWith(maze.getMaze())) {
-                    player.moveBy(0, -yStep);
-                    break;
+    private void render() {
+        renderPending.set(false);
+        GameState current = state;
+        
+        if (current != shownState) {
+            DirtyRegion dirty = new DirtyRegion();
+            DirtyRepaintManager.beginFrame();
+            
+            try {
+                long lockTime = Metrics.lock(board);
+                
+                try {
+                    show(current, dirty);
+                } finally {
+                    Metrics.unlock(board, lockTime);
                 }
+            } finally {
+                DirtyRepaintManager.endFrame(dirty);
             }
-
-            updateAngle();
-            
-            board.unlock();
         }
     }
     
     /**
-     * Updates the orientation of the image according to the current moving
-     * direction.
+     * React to key events by queuing them for the next tick.
+     * @param event the key event
+     */
+    private void onKey(KeyEvent event) {
+        int eventType = event.getID();
+        
+        if (eventType == KeyEvent.KEY_PRESSED || eventType == KeyEvent.KEY_RELEASED) {
+            keys.add(event);
+            clock.wake();
+        }
+    }
+    
+    /**
+     * Updates the animation, the maze view and the sprite according to the
+     * state.
+     * @param current the state to display
+     * @param dirty the region to which the changed parts of the board are
+     * added
      */
-    private void updateAngle() {
-        // add one to the direction (-1, 0 or 1) obtain an array index
-        int xDirection = Integer.signum(xSpeed) + 1;
-        int yDirection = Integer.signum(ySpeed) + 1;
+    private void show(GameState current, DirtyRegion dirty) {
+        boolean wasMoving = (shownState != null && shownState.isMoving());
+        
+        if (shownState != null)
+            addSpriteBounds(shownState, dirty);
+        
+        if (current.isMoving() && !wasMoving)
+            animationStart = current.getTick();
         
-        int[][] angles = {
-            {-45, 0, 45},
-            {-90, -1, 90},
-            {-135, 180, 135}
-        };
+        int frame = 0;
+        
+        if (current.isMoving()) {
+            long time = (current.getTick() - animationStart) * GameClock.PERIOD;
+            frame = (int) (time / FRAME_DELAY % atlas.getFrameCount());
+        }
         
-        int newAngle = angles[yDirection][xDirection];
+        boolean frameChanged = showFrame(atlas.getFrame(frame, SpriteAtlas.getDirection(current.getAngle())));
+        
+        shownState = current;
+        maze.show(current, dirty);
+        player.moveTo(getSpriteX(current), getSpriteY(current));
+        addSpriteBounds(current, dirty);
+        
+        // the board does not notice the new frame, so it must be repainted explicitly
+        if (frameChanged)
+            dirty.addChangedImage(getSpriteX(current), getSpriteY(current), atlas.getCellSize(), atlas.getCellSize());
+    }
+    
+    /**
+     * Copies a frame from the atlas into the sprite's image, unless it is
+     * already shown.
+     * @param frame the rotated frame
+     * @return true if the image changed
+     */
+    private boolean showFrame(BufferedImage frame) {
+        if (frame == shownFrame)
+            return false;
+        
+        Graphics2D graphics = sprite.createGraphics();
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.drawImage(frame, 0, 0, null);
+        graphics.dispose();
+        shownFrame = frame;
+        
+        return true;
+    }
+    
+    /**
+     * Adds the area covered by the sprite's cell to the region.
+     * @param shown the state determining the sprite position
+     * @param dirty the dirty region
+     */
+    private void addSpriteBounds(GameState shown, DirtyRegion dirty) {
+        dirty.add(getSpriteX(shown), getSpriteY(shown), atlas.getCellSize(), atlas.getCellSize());
+    }
+    
+    /**
+     * Returns the x coordinate of the sprite's cell on the board.
+     * @param shown the state determining the sprite position
+     * @return the x coordinate
+     */
+    private int getSpriteX(GameState shown) {
+        Camera camera = maze.getCamera();
+        int x = shown.getX() + atlas.getCellX();
+        
+        return (camera == null) ? x : x - camera.getX();
+    }
+    
+    /**
+     * Returns the y coordinate of the sprite's cell on the board.
+     * @param shown the state determining the sprite position
+     * @return the y coordinate
+     */
+    private int getSpriteY(GameState shown) {
+        Camera camera = maze.getCamera();
+        int y = shown.getY() + atlas.getCellY();
         
-        if (newAngle != -1)
-            player.setAngle(newAngle);
+        return (camera == null) ? y : y - camera.getY();
     }
 }
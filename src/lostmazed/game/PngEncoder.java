@@ -0,0 +1,97 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writes images in the PNG format.
+ * @author Matúš Sulír
+ */
+public class PngEncoder {
+    private PngEncoder() {
+    }
+    
+    /**
+     * Encodes an image into a stream. The stream is flushed, but not closed.
+     * 
+     * The maximal compression is used only if the installed PNG writer
+     * supports setting it; older writers always compress maximally.
+     * @param image the image to encode
+     * @param stream the output stream
+     * @param maxCompression true to use the smallest output at the cost of
+     * time, false to use the writer's default
+     * @throws IOException when the image could not be written
+     */
+    public static void write(BufferedImage image, OutputStream stream, boolean maxCompression) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        
+        if (!writers.hasNext())
+            throw new IOException("No PNG writer is available");
+        
+        if (image.isAlphaPremultiplied()) {
+            // images in the display format can be premultiplied, which the writer does not support
+            BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = copy.createGraphics();
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            image = copy;
+        }
+        
+        ImageWriter writer = writers.next();
+        ImageOutputStream output = ImageIO.createImageOutputStream(stream);
+        
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            
+            if (maxCompression && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                
+                if (param.getCompressionType() == null)
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                
+                param.setCompressionQuality(0);
+            }
+            
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            output.close();
+        }
+        
+        stream.flush();
+    }
+}
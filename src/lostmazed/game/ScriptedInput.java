@@ -0,0 +1,84 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed list of key presses and releases at specified ticks.
+ * @author Matúš Sulír
+ */
+public class ScriptedInput implements InputScript {
+    private final List<long[]> events = new ArrayList<long[]>();
+    private int next;
+    
+    /**
+     * Adds a key press. The events must be added in the order of ticks.
+     * @param tick the tick before which the key is pressed
+     * @param keyCode the key code from {@link java.awt.event.KeyEvent}
+     * @return this script
+     */
+    public ScriptedInput press(long tick, int keyCode) {
+        return add(tick, keyCode, true);
+    }
+    
+    /**
+     * Adds a key release. The events must be added in the order of ticks.
+     * @param tick the tick before which the key is released
+     * @param keyCode the key code from {@link java.awt.event.KeyEvent}
+     * @return this script
+     */
+    public ScriptedInput release(long tick, int keyCode) {
+        return add(tick, keyCode, false);
+    }
+    
+    /**
+     * Starts the script from the beginning.
+     */
+    public void rewind() {
+        next = 0;
+    }
+    
+    @Override
+    public void beforeTick(long tick, Simulation simulation) {
+        while (next < events.size() && events.get(next)[0] <= tick) {
+            long[] event = events.get(next++);
+            simulation.setKey((int) event[1], event[2] != 0);
+        }
+    }
+    
+    @Override
+    public boolean isFinished(long tick) {
+        return next >= events.size();
+    }
+    
+    private ScriptedInput add(long tick, int keyCode, boolean pressed) {
+        if (!events.isEmpty() && events.get(events.size() - 1)[0] > tick)
+            throw new IllegalArgumentException("The events must be added in the order of ticks");
+        
+        events.add(new long[] {tick, keyCode, pressed ? 1 : 0});
+        return this;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Point;
+import java.io.IOException;
+
+/**
+ * The game rules without any graphics: movement, collisions, fog and end
+ * detection.
+ *
+ * The simulation advances only when {@link #tick()} is called, so it can run
+ * as fast as the processor allows, e.g. for automated playtesting. Replaying
+ * an {@link InputLog} recorded by a {@link Player} reproduces the run. The
+ * player also uses a simulation and only displays its {@link GameState}.
+ * @author Matúš Sulír
+ */
+public class Simulation {
+    /**
+     * The speed of the game itself.
+     */
+    public static final double REAL_TIME = 1;
+    
+    /**
+     * The speed meaning no waiting between ticks.
+     */
+    public static final double UNTHROTTLED = 0;
+    
+    private final Movement movement;
+    private final FogGrid fog;
+    private final Point end;
+    private final int centerX;
+    private final int centerY;
+    private long ticks;
+    private long finishTick = -1;
+    private int angle;
+    private int[] revealedTiles = new int[64];
+    private int revealedCount;
+
+    /**
+     * Constructs a simulation of the player in the maze.
+     * @param maze the maze to play
+     * @throws IOException when the player image can not be loaded
+     */
+    public Simulation(Maze maze) throws IOException {
+        this(maze.getObstacles(Player.getFootprint()), maze.getDistanceField(Player.getFootprint()),
+                Player.getFootprint(), maze.getWorldWidth(), maze.getWorldHeight(), maze.getStart(), maze.getEnd());
+    }
+    
+    /**
+     * Constructs a simulation from the individual parts of a maze.
+     * @param obstacles the positions where the player collides with the walls
+     * @param distanceField the distance field of the obstacles, or null
+     * @param footprint the footprint of the player sprite
+     * @param worldWidth the maze width
+     * @param worldHeight the maze height
+     * @param start the starting point
+     * @param end the ending point
+     */
+    public Simulation(Obstacles obstacles, DistanceField distanceField, Footprint footprint,
+            int worldWidth, int worldHeight, Point start, Point end) {
+        movement = new Movement(obstacles, distanceField);
+        fog = new FogGrid(worldWidth, worldHeight) {
+            @Override
+            protected void onRevealed(int column, int row) {
+                addRevealedTile(row * getColumns() + column);
+            }
+        };
+        this.end = new Point(end);
+        centerX = footprint.getWidth() / 2;
+        centerY = footprint.getHeight() / 2;
+        
+        placeTo(start);
+    }
+    
+    /**
+     * Moves the player to the specified location.
+     * @param point the location of the player's top left corner
+     */
+    public void placeTo(Point point) {
+        movement.placeTo(point);
+        onMoved();
+    }
+    
+    /**
+     * Presses or releases an arrow key.
+     * @param keyCode the key code from {@link java.awt.event.KeyEvent}
+     * @param pressed true if the key was pressed, false if released
+     * @return true if the player's speed changed
+     */
+    public boolean setKey(int keyCode, boolean pressed) {
+        return movement.setKey(keyCode, pressed);
+    }
+    
+    /**
+     * Simulates one clock tick.
+     * @return true if the player's position changed
+     */
+    public boolean tick() {
+        ticks++;
+        
+        int newAngle = movement.getAngle();
+        
+        if (newAngle != -1)
+            angle = newAngle;
+        
+        if (movement.step()) {
+            onMoved();
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Runs the simulation as fast as possible until the maze is finished, the
+     * script ends and the player stops, or the tick limit is reached.
+     * @param script the source of key events
+     * @param maxTicks the maximal number of ticks to simulate
+     * @return true if the maze was finished
+     */
+    public boolean run(InputScript script, long maxTicks) {
+        return run(script, maxTicks, UNTHROTTLED);
+    }
+    
+    /**
+     * Runs the simulation at the given speed until the maze is finished, the
+     * script ends and the player stops, or the tick limit is reached.
+     * 
+     * The speed is relative to the game, which runs one tick per
+     * {@link GameClock#PERIOD} milliseconds. If the current thread is
+     * interrupted, the simulation stops.
+     * @param script the source of key events
+     * @param maxTicks the maximal number of ticks to simulate
+     * @param speed e.g. {@link #REAL_TIME}, 4 for four times faster, or
+     * {@link #UNTHROTTLED}
+     * @return true if the maze was finished
+     */
+    public boolean run(InputScript script, long maxTicks, double speed) {
+        long period = (speed > 0) ? (long) (GameClock.PERIOD * 1000000L / speed) : 0;
+        long nextTick = System.nanoTime();
+        
+        while (!isFinished() && ticks < maxTicks) {
+            script.beforeTick(ticks, this);
+            
+            if (script.isFinished(ticks) && !movement.isMoving())
+                break;
+            
+            if (period != 0) {
+                nextTick += period;
+                long delay = nextTick - System.nanoTime();
+                
+                try {
+                    if (delay > 0)
+                        Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            
+            tick();
+        }
+        
+        return isFinished();
+    }
+    
+    /**
+     * Returns true if the player has reached the end.
+     * @return true if the maze is finished
+     */
+    public boolean isFinished() {
+        return finishTick != -1;
+    }
+    
+    /**
+     * Returns the tick at which the end was reached.
+     * @return the tick count, or -1 if the maze is not finished
+     */
+    public long getFinishTick() {
+        return finishTick;
+    }
+    
+    /**
+     * Returns the number of simulated ticks.
+     * @return the tick count
+     */
+    public long getTicks() {
+        return ticks;
+    }
+    
+    /**
+     * Returns the x coordinate of the player's top left corner.
+     * @return the x coordinate in the maze
+     */
+    public int getX() {
+        return movement.getX();
+    }
+    
+    /**
+     * Returns the y coordinate of the player's top left corner.
+     * @return the y coordinate in the maze
+     */
+    public int getY() {
+        return movement.getY();
+    }
+    
+    /**
+     * Returns true if any arrow key is pressed.
+     * @return true if the player is moving
+     */
+    public boolean isMoving() {
+        return movement.isMoving();
+    }
+    
+    /**
+     * Returns the number of collision tests since the last call, if the
+     * metrics are enabled.
+     * @return the number of tests
+     */
+    public int takeCollisionTests() {
+        return movement.takeCollisionTests();
+    }
+    
+    /**
+     * Creates a snapshot of the current state.
+     * @return the immutable state
+     */
+    public GameState getState() {
+        int x = movement.getX();
+        int y = movement.getY();
+        
+        return new GameState(ticks, x, y, x + centerX, y + centerY, angle, movement.isMoving(),
+                isFinished(), revealedTiles, revealedCount);
+    }
+    
+    /**
+     * Returns the fog tiles hiding the unvisited parts of the maze.
+     * @return the fog grid
+     */
+    public FogGrid getFog() {
+        return fog;
+    }
+    
+    /**
+     * Uncovers the fog and checks the end after the player has moved.
+     */
+    private void onMoved() {
+        int x = movement.getX() + centerX;
+        int y = movement.getY() + centerY;
+        
+        fog.reveal(x, y);
+        
+        if (finishTick == -1 && Maze.isAtEnd(end, x, y))
+            finishTick = ticks;
+    }
+    
+    /**
+     * Appends a tile to the list of uncovered tiles. A full array is replaced
+     * by a larger copy, so the tiles in published snapshots never change.
+     * @param index the tile index
+     */
+    private void addRevealedTile(int index) {
+        if (revealedCount == revealedTiles.length) {
+            int[] larger = new int[revealedTiles.length * 2];
+            System.arraycopy(revealedTiles, 0, larger, 0, revealedCount);
+            revealedTiles = larger;
+        }
+        
+        revealedTiles[revealedCount++] = index;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * The animation frames of a sprite, rotated in advance to all eight moving
+ * directions, together with the footprint used for collisions.
+ * 
+ * Every rotated frame is stored in a square cell large enough for any
+ * rotation, centered at the center of the unrotated sprite, so a frame is
+ * displayed by a simple copy. The atlas of the player is built once per
+ * process; its images are converted again when the display configuration
+ * changes.
+ * @author Matúš Sulír
+ */
+public class SpriteAtlas {
+    /**
+     * The number of directions, clockwise by 45 degrees starting upwards.
+     */
+    public static final int DIRECTIONS = 8;
+    
+    private static final String[] PLAYER_FRAMES = {
+        "lostmazed/res/player.png", "lostmazed/res/player_2.png", "lostmazed/res/player_3.png"
+    };
+    
+    private static SpriteAtlas player;
+    
+    private final BufferedImage[] sources;
+    private final int width;
+    private final int height;
+    private final int cellSize;
+    private final Footprint footprint;
+    private BufferedImage[][] cells;
+    private int generation;
+    
+    /**
+     * Builds the atlas from image resources.
+     * @param names the resource names of the frames, all of the same size;
+     * the footprint is computed from the first one
+     * @throws IOException when a frame could not be loaded
+     */
+    public SpriteAtlas(String[] names) throws IOException {
+        sources = new BufferedImage[names.length];
+        
+        for (int i = 0; i < names.length; i++)
+            sources[i] = Assets.getImage(names[i]);
+        
+        BufferedImage first = sources[0];
+        width = first.getWidth();
+        height = first.getHeight();
+        cellSize = (int) Math.ceil(Math.hypot(width, height));
+        
+        footprint = new Footprint(first);
+        rotateFrames();
+    }
+    
+    /**
+     * Returns the atlas of the player sprite, building it when called for
+     * the first time.
+     * @return the atlas shared by all players
+     * @throws IOException when the player images could not be loaded
+     */
+    public static synchronized SpriteAtlas getPlayer() throws IOException {
+        if (player == null)
+            player = new SpriteAtlas(PLAYER_FRAMES);
+        
+        return player;
+    }
+    
+    /**
+     * Converts an angle in degrees to a direction index.
+     * @param angle the angle, a multiple of 45 degrees
+     * @return the direction, 0 to 7
+     */
+    public static int getDirection(int angle) {
+        return ((angle / 45) % DIRECTIONS + DIRECTIONS) % DIRECTIONS;
+    }
+    
+    /**
+     * Returns the number of animation frames.
+     * @return the frame count
+     */
+    public int getFrameCount() {
+        return sources.length;
+    }
+    
+    /**
+     * Returns a rotated frame. The image is shared and must not be modified.
+     * @param frame the frame index
+     * @param direction the direction index
+     * @return the image of the cell
+     */
+    public synchronized BufferedImage getFrame(int frame, int direction) {
+        if (generation != DisplayImages.getGeneration())
+            rotateFrames();
+        
+        return cells[frame][direction];
+    }
+    
+    /**
+     * Returns the size of a cell containing one rotated frame.
+     * @return the width and height of the cell
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+    
+    /**
+     * Returns the x offset of a cell from the top left corner of the
+     * unrotated sprite.
+     * @return the offset (negative or zero)
+     */
+    public int getCellX() {
+        return (width - cellSize) / 2;
+    }
+    
+    /**
+     * Returns the y offset of a cell from the top left corner of the
+     * unrotated sprite.
+     * @return the offset (negative or zero)
+     */
+    public int getCellY() {
+        return (height - cellSize) / 2;
+    }
+    
+    /**
+     * Returns the footprint of the sprite in all directions, which is used
+     * for collisions so that turning can never move the sprite into a wall.
+     * @return the footprint relative to the unrotated sprite's corner
+     */
+    public Footprint getFootprint() {
+        return footprint;
+    }
+    
+    /**
+     * Draws all frames in all directions into cells in the display format.
+     */
+    private void rotateFrames() {
+        generation = DisplayImages.getGeneration();
+        cells = new BufferedImage[sources.length][DIRECTIONS];
+        
+        for (int frame = 0; frame < sources.length; frame++) {
+            BufferedImage image = sources[frame];
+            
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                BufferedImage cell = DisplayImages.create(cellSize, cellSize, Transparency.TRANSLUCENT);
+                Graphics2D graphics = cell.createGraphics();
+                AffineTransform transform = AffineTransform.getTranslateInstance(-getCellX(), -getCellY());
+                transform.rotate(Math.toRadians(direction * 45), width / 2.0, height / 2.0);
+                graphics.drawImage(image, transform, null);
+                graphics.dispose();
+                cells[frame][direction] = cell;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * The durations of the startup stages, measured from the launch of the
+ * virtual machine.
+ * 
+ * Every stage is logged. The two main metrics, the time until the menu is
+ * painted and the time until the first frame of a game is painted, are also
+ * available over JMX (see {@link Metrics}). They are recorded once per
+ * process, by the first paint of the board (see
+ * {@link DirtyRepaintManager}) after the menu or the game was put on it.
+ * @author Matúš Sulír
+ */
+public class StartupTimes {
+    private static final Logger logger = Logger.getLogger(StartupTimes.class.getName());
+    private static final long launchTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private static long timeToMenu = -1;
+    private static long timeToFirstFrame = -1;
+    private static boolean menuExpected;
+    private static boolean firstFrameExpected;
+    private static volatile boolean paintExpected;
+    
+    private StartupTimes() {
+    }
+    
+    /**
+     * Logs that a stage has just finished.
+     * @param stage the stage name
+     * @return the time since the launch in milliseconds
+     */
+    public static long mark(String stage) {
+        long elapsed = System.currentTimeMillis() - launchTime;
+        logger.info(String.format(Locale.ROOT, "%s at %d ms", stage, elapsed));
+        
+        return elapsed;
+    }
+    
+    /**
+     * Logs a stage which finished after the given duration.
+     * @param stage the stage name
+     * @param nanoseconds the duration of the stage
+     */
+    public static void record(String stage, long nanoseconds) {
+        long elapsed = System.currentTimeMillis() - launchTime;
+        logger.info(String.format(Locale.ROOT, "%s took %.1f ms, finished at %d ms",
+                stage, nanoseconds / 1e6, elapsed));
+    }
+    
+    /**
+     * Notes that the menu was put on the board, so that the next paint is
+     * recorded as the time to the menu, unless it was already recorded.
+     */
+    public static synchronized void expectMenu() {
+        if (timeToMenu < 0) {
+            menuExpected = true;
+            paintExpected = true;
+        }
+    }
+    
+    /**
+     * Notes that a game was put on the board, so that the next paint is
+     * recorded as the time to the first frame, unless it was already
+     * recorded.
+     */
+    public static synchronized void expectFirstFrame() {
+        if (timeToFirstFrame < 0) {
+            firstFrameExpected = true;
+            paintExpected = true;
+        }
+    }
+    
+    /**
+     * Called on the event dispatch thread after the board was painted.
+     */
+    public static void painted() {
+        if (!paintExpected)
+            return;
+        
+        synchronized (StartupTimes.class) {
+            if (menuExpected)
+                timeToMenu = mark("Menu painted");
+            
+            if (firstFrameExpected)
+                timeToFirstFrame = mark("First game frame painted");
+            
+            menuExpected = false;
+            firstFrameExpected = false;
+            paintExpected = false;
+        }
+    }
+    
+    /**
+     * Returns the time from the launch until the menu was painted.
+     * @return the time in milliseconds, or -1 if not painted yet
+     */
+    public static synchronized long getTimeToMenu() {
+        return timeToMenu;
+    }
+    
+    /**
+     * Returns the time from the launch until the first frame of a game was
+     * painted.
+     * @return the time in milliseconds, or -1 if no game was played yet
+     */
+    public static synchronized long getTimeToFirstFrame() {
+        return timeToFirstFrame;
+    }
+}
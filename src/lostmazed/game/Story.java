@@ -32,19 +32,10 @@ import soga2d.objects.Text;
 import soga2d.events.KeyListener;
 
 /**
- * The game story screen.
+ * The game story screen, showing the texts of the campaign.
  * @author Matúš Sulír
  */
 public class Story {
-    private static final String[] storyTexts = {
-            "One sunny day you decided to make a trip and visit a small hedge maze.\n"
-            + "As you are walking, you suddenly observe stairs leading under the ground. You descend them\n"
-            + "and find a system of underground corridors. After half an hour, you realize that you are...\n"
-            + "lost in a maze!",
-            "Well, you gou out of the underground corridors. But you are in a hedge maze, don't you remember?",
-            "Finally, you are free!"
-    };
-    
     private GraphicBoard board;
     private MainMenu menu;
     private Game game;
@@ -63,20 +54,21 @@ public class Story {
     
     /**
      * Shows the story and waits for the user to press a key.
-     * @param partNumber the game part number
+     * @param partNumber the game part number; the number after the last part
+     * shows the ending
      */
     public void show(final int partNumber) {
         board.lock();
         board.clear();
 
-        Text story = new Text(storyTexts[partNumber - 1], 30, 300, new Font("Arial", Font.BOLD, 16), Color.LIGHT_GRAY);
+        Text story = new Text(game.getCampaign().getStory(partNumber), 30, 300, new Font("Arial", Font.BOLD, 16), Color.LIGHT_GRAY);
         Text pressKey = new Text("Press ENTER to continue...", 250, 420, new Font("Arial", Font.BOLD, 16), Color.WHITE);
 
         pressKey.setKeyListener(new KeyListener() {
             @Override
             public void onKeyEvent(KeyEvent event) {
                 if (event.getID() == KeyEvent.KEY_PRESSED && event.getKeyCode() == KeyEvent.VK_ENTER) {
-                    if (partNumber == storyTexts.length)
+                    if (partNumber > game.getCampaign().getPartCount())
                         menu.show();
                     else
                         game.start(partNumber);
@@ -0,0 +1,182 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of decoded maze tiles.
+ *
+ * Tiles can be decoded in advance on the decoder pool. When the number of
+ * decoded tiles exceeds the limit, the least recently used ones are
+ * forgotten. A tile which could not be decoded is logged once and never
+ * decoded again.
+ * @author Matúš Sulír
+ */
+public class TileCache {
+    /**
+     * Decodes one tile.
+     */
+    public interface Decoder {
+        /**
+         * Decodes the tile with the given key.
+         * @param key the tile key
+         * @return the tile image or null if the tile is empty
+         * @throws IOException when the tile could not be decoded
+         */
+        BufferedImage decode(long key) throws IOException;
+    }
+
+    private static final Logger logger = Logger.getLogger(TileCache.class.getName());
+    
+    private final int maxTiles;
+    private final Decoder decoder;
+    private final LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true);
+    private final Map<Long, Future<BufferedImage>> pending = new HashMap<Long, Future<BufferedImage>>();
+    private final Set<Long> failed = new HashSet<Long>();
+
+    /**
+     * Constructs an empty cache.
+     * @param maxTiles the maximal number of decoded tiles held
+     * @param decoder the tile decoder
+     */
+    public TileCache(int maxTiles, Decoder decoder) {
+        this.maxTiles = maxTiles;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Returns the tile, decoding it if necessary.
+     * @param key the tile key
+     * @return the tile image or null if the tile is empty
+     * @throws IOException when the tile could not be decoded
+     */
+    public BufferedImage get(long key) throws IOException {
+        Future<BufferedImage> future;
+
+        synchronized (this) {
+            if (tiles.containsKey(key))
+                return tiles.get(key);
+
+            if (failed.contains(key))
+                throw new IOException("The tile " + Long.toHexString(key) + " could not be decoded");
+
+            future = pending.get(key);
+        }
+
+        BufferedImage tile;
+
+        if (future == null) {
+            tile = decode(key);
+        } else {
+            try {
+                tile = future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Decoding of the tile was interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException("The tile " + Long.toHexString(key) + " could not be decoded", ex.getCause());
+            }
+        }
+
+        put(key, tile);
+        return tile;
+    }
+
+    /**
+     * Starts decoding the tile in the background unless it is already
+     * decoded or being decoded.
+     * @param key the tile key
+     */
+    public synchronized void prefetch(final long key) {
+        if (tiles.containsKey(key) || pending.containsKey(key) || failed.contains(key))
+            return;
+
+        pending.put(key, WorkerPool.get().submit(new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws IOException {
+                BufferedImage tile = decode(key);
+                put(key, tile);
+                return tile;
+            }
+        }));
+    }
+
+    /**
+     * Decodes the tile, remembering and logging the failure if it could not
+     * be decoded.
+     * @param key the tile key
+     * @return the tile image or null if the tile is empty
+     * @throws IOException when the tile could not be decoded
+     */
+    private BufferedImage decode(long key) throws IOException {
+        try {
+            return decoder.decode(key);
+        } catch (IOException ex) {
+            failed(key, ex);
+            throw ex;
+        } catch (RuntimeException ex) {
+            failed(key, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Remembers that the tile could not be decoded, logging it the first
+     * time.
+     * @param key the tile key
+     * @param ex the cause of the failure
+     */
+    private synchronized void failed(long key, Exception ex) {
+        pending.remove(key);
+
+        if (failed.add(key))
+            logger.log(Level.WARNING, "The tile " + Long.toHexString(key) + " could not be decoded", ex);
+    }
+
+    /**
+     * Adds the decoded tile, evicting the least recently used tiles if
+     * necessary.
+     * @param key the tile key
+     * @param tile the tile image
+     */
+    private synchronized void put(long key, BufferedImage tile) {
+        pending.remove(key);
+        tiles.put(key, tile);
+
+        while (tiles.size() > maxTiles)
+            tiles.remove(tiles.keySet().iterator().next());
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.game;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import javax.imageio.ImageIO;
+
+/**
+ * A maze file divided into independently compressed tiles, suitable for very
+ * large mazes.
+ *
+ * The file contains a header, an index of all tiles, the packed wall mask and
+ * the PNG-compressed tiles of the background and the walls. The file is
+ * mapped into memory and only the tiles near the player are decoded, so
+ * neither the loading time nor the heap usage depend on the maze size.
+ * @author Matúš Sulír
+ */
+public class TiledMazeFile {
+    /**
+     * The format version of tiled maze files.
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * The maximal number of decoded tiles held in memory.
+     */
+    public static final int CACHED_TILES = 96;
+
+    private static final int INDEX_OFFSET = 48;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int MAX_TILE_LENGTH = 1 << 24;
+
+    private final Point start;
+    private final Point end;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+    private final ByteBuffer index;
+    private final ByteBuffer[] segments;
+    private final CollisionMask walls;
+    private final TileCache cache;
+
+    /**
+     * Opens the tiled maze file.
+     * @param file the file
+     * @throws IOException when the file could not be opened or has an invalid
+     * format
+     */
+    public TiledMazeFile(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+
+            if (size < INDEX_OFFSET)
+                throw new InvalidObjectException("The maze file has an invalid format");
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, INDEX_OFFSET);
+
+            if (header.getInt(0) != Maze.FORMAT_TAG || header.getInt(4) != VERSION)
+                throw new InvalidObjectException("The maze file has an invalid format");
+
+            start = new Point(header.getInt(8), header.getInt(12));
+            end = new Point(header.getInt(16), header.getInt(20));
+            width = header.getInt(24);
+            height = header.getInt(28);
+            tileSize = header.getInt(32);
+            long maskOffset = header.getLong(40);
+
+            if (width <= 0 || height <= 0 || tileSize <= 0)
+                throw new InvalidObjectException("The maze file has an invalid format");
+
+            columns = (width + tileSize - 1) / tileSize;
+            rows = (height + tileSize - 1) / tileSize;
+            long indexLength = 2L * columns * rows * INDEX_ENTRY_SIZE;
+            long maskLength = 8L * CollisionMask.getWordCount(width, height);
+
+            if (INDEX_OFFSET + indexLength > maskOffset || maskOffset + maskLength > size)
+                throw new InvalidObjectException("The maze file has an invalid format");
+
+            index = channel.map(FileChannel.MapMode.READ_ONLY, INDEX_OFFSET, indexLength);
+            ByteBuffer mask = channel.map(FileChannel.MapMode.READ_ONLY, maskOffset, maskLength);
+            walls = new CollisionMask(0, 0, width, height, mask.asLongBuffer());
+
+            // overlapping segments, so that every tile lies entirely within one of them
+            segments = new ByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_SIZE;
+                long length = Math.min(size - offset, SEGMENT_SIZE + MAX_TILE_LENGTH);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+        } finally {
+            input.close();
+        }
+
+        cache = new TileCache(CACHED_TILES, new TileCache.Decoder() {
+            @Override
+            public BufferedImage decode(long key) throws IOException {
+                return decodeTile(key);
+            }
+        });
+    }
+
+    /**
+     * Returns the background layer.
+     * @return the background chunks
+     */
+    public ChunkSource getBackground() {
+        return new Layer(0);
+    }
+
+    /**
+     * Returns the layer of the maze "walls".
+     * @return the walls chunks
+     */
+    public ChunkSource getMaze() {
+        return new Layer(1);
+    }
+
+    /**
+     * Returns the mask of all wall pixels.
+     * @return the wall mask mapped from the file
+     */
+    public CollisionMask getWalls() {
+        return walls;
+    }
+
+    /**
+     * Returns the starting point.
+     * @return the starting point
+     */
+    public Point getStart() {
+        return new Point(start);
+    }
+
+    /**
+     * Returns the ending point.
+     * @return the ending point
+     */
+    public Point getEnd() {
+        return new Point(end);
+    }
+
+    /**
+     * Writes a maze in the tiled format.
+     * @param file the output file
+     * @param background the background layer
+     * @param maze the layer of the maze "walls"
+     * @param walls the mask of all wall pixels
+     * @param start the starting point
+     * @param end the ending point
+     * @param maxCompression true to compress the tiles as much as possible
+     * @throws IOException when the file could not be written
+     */
+    public static void write(File file, ChunkSource background, ChunkSource maze, CollisionMask walls,
+            Point start, Point end, boolean maxCompression) throws IOException {
+        int tileSize = background.getChunkSize();
+
+        if (maze.getChunkSize() != tileSize)
+            throw new IllegalArgumentException("Both layers must have the same chunk size");
+
+        int width = Math.max(background.getWidth(), maze.getWidth());
+        int height = Math.max(background.getHeight(), maze.getHeight());
+        int columns = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+        long indexLength = 2L * columns * rows * INDEX_ENTRY_SIZE;
+        long maskOffset = INDEX_OFFSET + indexLength;
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+
+        try {
+            output.setLength(0);
+            output.seek(maskOffset);
+            writeMask(output, walls, width, height);
+
+            ByteBuffer indexBuffer = ByteBuffer.allocate((int) indexLength);
+            ByteArrayOutputStream tileStream = new ByteArrayOutputStream();
+            ChunkSource[] layers = {background, maze};
+
+            for (ChunkSource layer : layers) {
+                for (int row = 0; row < rows; row++) {
+                    for (int column = 0; column < columns; column++) {
+                        BufferedImage tile = layer.getChunk(column, row);
+                        tileStream.reset();
+
+                        if (tile != null)
+                            PngEncoder.write(tile, tileStream, maxCompression);
+
+                        if (tileStream.size() > MAX_TILE_LENGTH)
+                            throw new IOException("The maze tile is too large");
+
+                        indexBuffer.putLong(output.getFilePointer());
+                        indexBuffer.putInt(tileStream.size());
+                        output.write(tileStream.toByteArray());
+                    }
+                }
+            }
+
+            output.seek(0);
+            output.writeInt(Maze.FORMAT_TAG);
+            output.writeInt(VERSION);
+            output.writeInt((int) start.getX());
+            output.writeInt((int) start.getY());
+            output.writeInt((int) end.getX());
+            output.writeInt((int) end.getY());
+            output.writeInt(width);
+            output.writeInt(height);
+            output.writeInt(tileSize);
+            output.writeInt(0);
+            output.writeLong(maskOffset);
+            output.write(indexBuffer.array());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Writes the wall mask cropped or extended to the maze size.
+     * @param output the output
+     * @param walls the mask of all wall pixels
+     * @param width the maze width
+     * @param height the maze height
+     * @throws IOException when the mask could not be written
+     */
+    private static void writeMask(RandomAccessFile output, CollisionMask walls, int width, int height)
+            throws IOException {
+        CollisionMask mask = walls;
+
+        if (walls.getOriginX() != 0 || walls.getOriginY() != 0 || walls.getWidth() != width
+                || walls.getHeight() != height) {
+            mask = new CollisionMask(0, 0, width, height);
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (walls.isBlocked(x, y))
+                        mask.setBlocked(x, y);
+                }
+            }
+        }
+
+        // the stream writes at the current position of the file
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(output.getChannel())));
+        mask.write(stream);
+        stream.flush();
+    }
+
+    /**
+     * Decodes one tile from the mapped file and converts it into the display
+     * format.
+     * @param key the tile key (the layer, column and row)
+     * @return the tile image or null if the tile is empty
+     * @throws IOException when the tile could not be decoded
+     */
+    private BufferedImage decodeTile(long key) throws IOException {
+        int entry = (int) (key >>> 48) * columns * rows + (int) ((key >>> 24) & 0xFFFFFF) * columns
+                + (int) (key & 0xFFFFFF);
+        long offset = index.getLong(entry * INDEX_ENTRY_SIZE);
+        int length = index.getInt(entry * INDEX_ENTRY_SIZE + 8);
+
+        if (length == 0)
+            return null;
+
+        ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+        int position = (int) (offset % SEGMENT_SIZE);
+
+        if (length < 0 || position + length > segment.capacity())
+            throw new InvalidObjectException("The maze tile has an invalid location");
+
+        segment.position(position);
+        segment.limit(position + length);
+
+        return DisplayImages.prepare(ImageIO.read(new ByteBufferImageInputStream(segment)));
+    }
+
+    /**
+     * One layer of the maze backed by the tile cache.
+     */
+    private class Layer implements ChunkSource {
+        private final int layer;
+
+        /**
+         * Constructs the layer.
+         * @param layer the layer number (0 for the background, 1 for the walls)
+         */
+        Layer(int layer) {
+            this.layer = layer;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getChunkSize() {
+            return tileSize;
+        }
+
+        @Override
+        public BufferedImage getChunk(int column, int row) {
+            if (column < 0 || row < 0 || column >= columns || row >= rows)
+                return null;
+
+            try {
+                return cache.get(getKey(column, row));
+            } catch (IOException ex) {
+                // already logged by the cache, displayed as an empty tile
+                return null;
+            }
+        }
+
+        @Override
+        public void prefetch(int column, int row) {
+            if (column >= 0 && row >= 0 && column < columns && row < rows)
+                cache.prefetch(getKey(column, row));
+        }
+
+        /**
+         * Returns the tile cache key.
+         * @param column the tile column
+         * @param row the tile row
+         * @return the key
+         */
+        private long getKey(int column, int row) {
+            return ((long) layer << 48) | ((long) row << 24) | column;
+        }
+    }
+}
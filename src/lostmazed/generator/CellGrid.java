@@ -0,0 +1,201 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.generator;
+
+/**
+ * A rectangular grid of maze cells and the passages between them.
+ *
+ * Cells are numbered row by row. Each cell stores whether it is connected to
+ * its right and bottom neighbours, so different threads may carve passages
+ * of different cells at the same time.
+ * @author Matúš Sulír
+ */
+public class CellGrid {
+    /**
+     * The number of directions from a cell.
+     */
+    public static final int DIRECTIONS = 4;
+    
+    private static final byte EAST = 1;
+    private static final byte SOUTH = 2;
+    
+    private final int columns;
+    private final int rows;
+    private final byte[] passages;
+
+    /**
+     * Constructs a grid with no passages.
+     * @param columns the number of columns
+     * @param rows the number of rows
+     */
+    public CellGrid(int columns, int rows) {
+        if (columns <= 0 || rows <= 0 || (long) columns * rows > Integer.MAX_VALUE / 2)
+            throw new IllegalArgumentException("Invalid maze size: " + columns + "x" + rows);
+        
+        this.columns = columns;
+        this.rows = rows;
+        passages = new byte[columns * rows];
+    }
+    
+    /**
+     * Returns the number of columns.
+     * @return the column count
+     */
+    public int getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Returns the number of rows.
+     * @return the row count
+     */
+    public int getRows() {
+        return rows;
+    }
+    
+    /**
+     * Returns the number of cells.
+     * @return the cell count
+     */
+    public int getCellCount() {
+        return passages.length;
+    }
+    
+    /**
+     * Returns the neighbour of a cell.
+     * @param cell the cell index
+     * @param direction 0 (east), 1 (south), 2 (west) or 3 (north)
+     * @return the neighbour's index, or -1 if it is outside the grid
+     */
+    public int getNeighbour(int cell, int direction) {
+        int column = cell % columns;
+        
+        switch (direction) {
+            case 0:
+                return (column + 1 < columns) ? cell + 1 : -1;
+            case 1:
+                return (cell + columns < passages.length) ? cell + columns : -1;
+            case 2:
+                return (column > 0) ? cell - 1 : -1;
+            default:
+                return (cell >= columns) ? cell - columns : -1;
+        }
+    }
+    
+    /**
+     * Carves a passage between two neighbouring cells.
+     * @param cell the first cell
+     * @param neighbour the second cell
+     */
+    public void connect(int cell, int neighbour) {
+        if (neighbour == cell + 1)
+            passages[cell] |= EAST;
+        else if (neighbour == cell - 1)
+            passages[neighbour] |= EAST;
+        else if (neighbour == cell + columns)
+            passages[cell] |= SOUTH;
+        else if (neighbour == cell - columns)
+            passages[neighbour] |= SOUTH;
+        else
+            throw new IllegalArgumentException("The cells " + cell + " and " + neighbour + " are not neighbours");
+    }
+    
+    /**
+     * Returns true if there is a passage from the cell to its right
+     * neighbour.
+     * @param column the cell column
+     * @param row the cell row
+     * @return true if the passage exists
+     */
+    public boolean isOpenEast(int column, int row) {
+        return (passages[row * columns + column] & EAST) != 0;
+    }
+    
+    /**
+     * Returns true if there is a passage from the cell to its bottom
+     * neighbour.
+     * @param column the cell column
+     * @param row the cell row
+     * @return true if the passage exists
+     */
+    public boolean isOpenSouth(int column, int row) {
+        return (passages[row * columns + column] & SOUTH) != 0;
+    }
+    
+    /**
+     * Returns true if there is a passage between two neighbouring cells.
+     * @param cell the first cell
+     * @param direction the direction of the second cell
+     * @return true if the passage exists
+     */
+    public boolean isOpen(int cell, int direction) {
+        int neighbour = getNeighbour(cell, direction);
+        
+        if (neighbour == -1)
+            return false;
+        
+        switch (direction) {
+            case 0:
+                return (passages[cell] & EAST) != 0;
+            case 1:
+                return (passages[cell] & SOUTH) != 0;
+            case 2:
+                return (passages[neighbour] & EAST) != 0;
+            default:
+                return (passages[neighbour] & SOUTH) != 0;
+        }
+    }
+    
+    /**
+     * Finds the cell with the longest path from the given cell.
+     * @param from the starting cell
+     * @return the farthest reachable cell
+     */
+    public int getFarthestCell(int from) {
+        int[] queue = new int[passages.length];
+        boolean[] visited = new boolean[passages.length];
+        int head = 0;
+        int tail = 0;
+        
+        queue[tail++] = from;
+        visited[from] = true;
+        
+        while (head < tail) {
+            int cell = queue[head++];
+            
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                if (isOpen(cell, direction)) {
+                    int neighbour = getNeighbour(cell, direction);
+                    
+                    if (!visited[neighbour]) {
+                        visited[neighbour] = true;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+        
+        return queue[tail - 1];
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import lostmazed.game.WorkerPool;
+
+/**
+ * Randomized Kruskal's algorithm: the walls are removed in a random order
+ * unless they separate two already connected cells.
+ *
+ * The grid is split into horizontal strips which are processed in parallel,
+ * each with its own part of the union-find structure. Most walls inside a
+ * strip are decided there; the rest, together with the walls between the
+ * strips, are then decided sequentially. Leaving some walls for the second
+ * phase avoids long straight walls at the strip borders. The number of
+ * strips depends only on the maze size, so the result depends only on the
+ * seed, not on the number of processors.
+ * @author Matúš Sulír
+ */
+class Kruskal {
+    private static final int STRIP_ROWS = 64;
+    private static final double PARALLEL_FRACTION = 0.9;
+    
+    private final CellGrid grid;
+    private final int[] parents;
+    
+    private Kruskal(CellGrid grid) {
+        this.grid = grid;
+        parents = new int[grid.getCellCount()];
+    }
+    
+    /**
+     * Carves the maze.
+     * @param grid the grid with no passages
+     * @param seed the random seed
+     */
+    static void carve(CellGrid grid, long seed) {
+        new Kruskal(grid).carve(seed);
+    }
+    
+    private void carve(long seed) {
+        int strips = (grid.getRows() + STRIP_ROWS - 1) / STRIP_ROWS;
+        List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+        
+        for (int strip = 0; strip < strips; strip++) {
+            final int firstRow = strip * STRIP_ROWS;
+            final int endRow = Math.min(grid.getRows(), firstRow + STRIP_ROWS);
+            final long stripSeed = seed + strip * 0x9E3779B97F4A7C15L;
+            
+            results.add(WorkerPool.get().submit(new Callable<int[]>() {
+                @Override
+                public int[] call() {
+                    return carveStrip(firstRow, endRow, stripSeed);
+                }
+            }));
+        }
+        
+        int[] remaining = collectRemaining(results);
+        shuffle(remaining, remaining.length, new Random(seed));
+        
+        for (int edge : remaining)
+            tryConnect(edge);
+    }
+    
+    /**
+     * Decides most of the walls inside a strip.
+     * @param firstRow the first row of the strip
+     * @param endRow the row after the last row of the strip
+     * @param seed the random seed of the strip
+     * @return the undecided walls, including the walls below the strip
+     */
+    private int[] carveStrip(int firstRow, int endRow, long seed) {
+        int columns = grid.getColumns();
+        int firstCell = firstRow * columns;
+        int endCell = endRow * columns;
+        int[] edges = new int[2 * (endCell - firstCell)];
+        int count = 0;
+        
+        for (int cell = firstCell; cell < endCell; cell++) {
+            parents[cell] = cell;
+            
+            if (cell % columns + 1 < columns)
+                edges[count++] = 2 * cell;
+            
+            if (cell + columns < endCell)
+                edges[count++] = 2 * cell + 1;
+        }
+        
+        shuffle(edges, count, new Random(seed));
+        int parallelCount = (int) (count * PARALLEL_FRACTION);
+        
+        for (int i = 0; i < parallelCount; i++)
+            tryConnect(edges[i]);
+        
+        List<Integer> below = new ArrayList<Integer>();
+        
+        if (endRow < grid.getRows()) {
+            for (int cell = endCell - columns; cell < endCell; cell++)
+                below.add(2 * cell + 1);
+        }
+        
+        int[] remaining = new int[count - parallelCount + below.size()];
+        System.arraycopy(edges, parallelCount, remaining, 0, count - parallelCount);
+        
+        for (int i = 0; i < below.size(); i++)
+            remaining[count - parallelCount + i] = below.get(i);
+        
+        return remaining;
+    }
+    
+    private static int[] collectRemaining(List<Future<int[]>> results) {
+        List<int[]> parts = new ArrayList<int[]>();
+        int total = 0;
+        
+        try {
+            for (Future<int[]> result : results) {
+                int[] part = result.get();
+                parts.add(part);
+                total += part.length;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The maze generation was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("The maze could not be generated", ex.getCause());
+        }
+        
+        int[] remaining = new int[total];
+        int position = 0;
+        
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, remaining, position, part.length);
+            position += part.length;
+        }
+        
+        return remaining;
+    }
+    
+    /**
+     * Removes the wall if the cells on its sides are not connected yet.
+     * @param edge the cell index times two, plus one for the bottom wall
+     */
+    private void tryConnect(int edge) {
+        int cell = edge >>> 1;
+        int neighbour = ((edge & 1) == 0) ? cell + 1 : cell + grid.getColumns();
+        int root = find(cell);
+        int neighbourRoot = find(neighbour);
+        
+        if (root != neighbourRoot) {
+            // linking by a scrambled index keeps the trees shallow without storing ranks
+            if (scramble(root) < scramble(neighbourRoot))
+                parents[root] = neighbourRoot;
+            else
+                parents[neighbourRoot] = root;
+            
+            grid.connect(cell, neighbour);
+        }
+    }
+    
+    private int find(int cell) {
+        while (parents[cell] != cell) {
+            parents[cell] = parents[parents[cell]];
+            cell = parents[cell];
+        }
+        
+        return cell;
+    }
+    
+    private static int scramble(int index) {
+        return index * 0x9E3779B9;
+    }
+    
+    private static void shuffle(int[] array, int count, Random random) {
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+}
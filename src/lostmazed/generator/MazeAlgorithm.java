@@ -0,0 +1,84 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.generator;
+
+/**
+ * The algorithms which can carve a maze.
+ * @author Matúš Sulír
+ */
+public enum MazeAlgorithm {
+    /**
+     * A depth-first search creating long, winding corridors.
+     */
+    RECURSIVE_BACKTRACKER("Recursive backtracker") {
+        @Override
+        void carve(CellGrid grid, long seed) {
+            RecursiveBacktracker.carve(grid, seed);
+        }
+    },
+    
+    /**
+     * Randomized Kruskal's algorithm creating many short dead ends. Runs in
+     * parallel.
+     */
+    KRUSKAL("Kruskal") {
+        @Override
+        void carve(CellGrid grid, long seed) {
+            Kruskal.carve(grid, seed);
+        }
+    },
+    
+    /**
+     * Wilson's algorithm choosing uniformly among all possible mazes.
+     */
+    WILSON("Wilson") {
+        @Override
+        void carve(CellGrid grid, long seed) {
+            Wilson.carve(grid, seed);
+        }
+    };
+    
+    private final String name;
+    
+    private MazeAlgorithm(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Carves the passages of a perfect maze, where each cell is reachable
+     * from every other one by exactly one path.
+     * @param grid the grid with no passages
+     * @param seed the random seed; the same seed produces the same maze
+     */
+    abstract void carve(CellGrid grid, long seed);
+    
+    /**
+     * Returns the name of the algorithm for the user.
+     * @return the name
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.generator;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import lostmazed.game.Footprint;
+import lostmazed.game.Maze;
+import lostmazed.game.Player;
+import lostmazed.game.WorkerPool;
+import soga2d.GraphicObject;
+import soga2d.objects.Picture;
+
+/**
+ * Generates a maze: carves the passages, draws the walls image and places
+ * the starting and ending point as far from each other as possible.
+ *
+ * The generator can be used without any graphics; {@link #generateGrid()}
+ * produces only the cells, and {@link #drawWalls(CellGrid)} the walls image.
+ * @author Matúš Sulír
+ */
+public class MazeGenerator {
+    /**
+     * The default width of a corridor in pixels.
+     */
+    public static final int DEFAULT_CORRIDOR_WIDTH = 30;
+    
+    /**
+     * The width of a wall in pixels.
+     */
+    public static final int WALL_WIDTH = 6;
+    
+    /**
+     * The color of the walls.
+     */
+    public static final Color WALL_COLOR = new Color(46, 94, 30);
+    
+    private static final int STRIP_ROWS = 64;
+    
+    private final MazeAlgorithm algorithm;
+    private final int columns;
+    private final int rows;
+    private final int corridorWidth;
+    private final long seed;
+    private Point start;
+    private Point end;
+
+    /**
+     * Constructs the generator.
+     * @param algorithm the algorithm to use
+     * @param columns the number of cells in a row
+     * @param rows the number of cells in a column
+     * @param corridorWidth the width of corridors in pixels, which must be
+     * large enough for the player
+     * @param seed the random seed; the same settings and seed always produce
+     * the same maze
+     */
+    public MazeGenerator(MazeAlgorithm algorithm, int columns, int rows, int corridorWidth, long seed) {
+        this.algorithm = algorithm;
+        this.columns = columns;
+        this.rows = rows;
+        this.corridorWidth = corridorWidth;
+        this.seed = seed;
+    }
+    
+    /**
+     * Returns the number of cells which fit into an area of the given size.
+     * @param size the width or height in pixels
+     * @param corridorWidth the width of corridors in pixels
+     * @return the number of cells, at least 1
+     */
+    public static int getCellCount(int size, int corridorWidth) {
+        return Math.max(1, (size - WALL_WIDTH) / (corridorWidth + WALL_WIDTH));
+    }
+    
+    /**
+     * Generates the whole maze.
+     * @param background the maze background
+     * @return the maze
+     * @throws IOException when the player image can not be loaded
+     */
+    public Maze generate(GraphicObject background) throws IOException {
+        CellGrid grid = generateGrid();
+        BufferedImage walls = drawWalls(grid);
+        
+        return new Maze(background, new Picture(walls), start, end);
+    }
+    
+    /**
+     * Carves the passages and chooses the starting and ending point.
+     * @return the grid of cells
+     * @throws IOException when the player image can not be loaded
+     */
+    public CellGrid generateGrid() throws IOException {
+        Footprint footprint = Player.getFootprint();
+        
+        if (footprint.getMaxX() - footprint.getMinX() >= corridorWidth
+                || footprint.getMaxY() - footprint.getMinY() >= corridorWidth)
+            throw new IllegalArgumentException("The corridors are too narrow for the player");
+        
+        CellGrid grid = new CellGrid(columns, rows);
+        algorithm.carve(grid, seed);
+        
+        // the farthest cell from any cell is an end of the longest path
+        int startCell = grid.getFarthestCell(0);
+        int endCell = grid.getFarthestCell(startCell);
+        
+        start = getCellCorner(startCell);
+        start.translate((corridorWidth - footprint.getWidth()) / 2, (corridorWidth - footprint.getHeight()) / 2);
+        end = getCellCorner(endCell);
+        end.translate((corridorWidth - Maze.END_SIZE) / 2, (corridorWidth - Maze.END_SIZE) / 2);
+        
+        return grid;
+    }
+    
+    /**
+     * Returns the starting point of the last generated maze.
+     * @return the position of the player's top left corner
+     */
+    public Point getStart() {
+        return new Point(start);
+    }
+    
+    /**
+     * Returns the ending point of the last generated maze.
+     * @return the top left corner of the ending point
+     */
+    public Point getEnd() {
+        return new Point(end);
+    }
+    
+    /**
+     * Draws the walls of the maze into a transparent image. Strips of rows are
+     * drawn in parallel.
+     * @param grid the grid of cells
+     * @return the image with one bit per pixel
+     */
+    public BufferedImage drawWalls(final CellGrid grid) {
+        int pitch = corridorWidth + WALL_WIDTH;
+        long width = (long) grid.getColumns() * pitch + WALL_WIDTH;
+        long height = (long) grid.getRows() * pitch + WALL_WIDTH;
+        
+        if (width > Integer.MAX_VALUE || (width + 7) / 8 * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The maze is too large to draw");
+        
+        byte[] red = {0, (byte) WALL_COLOR.getRed()};
+        byte[] green = {0, (byte) WALL_COLOR.getGreen()};
+        byte[] blue = {0, (byte) WALL_COLOR.getBlue()};
+        byte[] alpha = {0, (byte) 255};
+        final BufferedImage image = new BufferedImage((int) width, (int) height, BufferedImage.TYPE_BYTE_BINARY,
+                new IndexColorModel(1, 2, red, green, blue, alpha));
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        
+        for (int firstRow = 0; firstRow < grid.getRows(); firstRow += STRIP_ROWS) {
+            final int first = firstRow;
+            
+            results.add(WorkerPool.get().submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    drawStrip(image, grid, first, Math.min(grid.getRows(), first + STRIP_ROWS));
+                    return null;
+                }
+            }));
+        }
+        
+        try {
+            for (Future<?> result : results)
+                result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The maze drawing was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("The maze could not be drawn", ex.getCause());
+        }
+        
+        return image;
+    }
+    
+    /**
+     * Draws the walls above and left of each cell in the rows, and the outer
+     * walls on the right and at the bottom.
+     * @param image the image to draw into
+     * @param grid the grid of cells
+     * @param firstRow the first row to draw
+     * @param endRow the row after the last row to draw
+     */
+    private void drawStrip(BufferedImage image, CellGrid grid, int firstRow, int endRow) {
+        int pitch = corridorWidth + WALL_WIDTH;
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(WALL_COLOR);
+        
+        for (int row = firstRow; row < endRow; row++) {
+            int y = row * pitch;
+            
+            for (int column = 0; column < grid.getColumns(); column++) {
+                int x = column * pitch;
+                graphics.fillRect(x, y, WALL_WIDTH, WALL_WIDTH);
+                
+                if (row == 0 || !grid.isOpenSouth(column, row - 1))
+                    graphics.fillRect(x + WALL_WIDTH, y, corridorWidth, WALL_WIDTH);
+                
+                if (column == 0 || !grid.isOpenEast(column - 1, row))
+                    graphics.fillRect(x, y + WALL_WIDTH, WALL_WIDTH, corridorWidth);
+            }
+            
+            graphics.fillRect(grid.getColumns() * pitch, y, WALL_WIDTH, pitch);
+        }
+        
+        if (endRow == grid.getRows())
+            graphics.fillRect(0, endRow * pitch, image.getWidth(), WALL_WIDTH);
+        
+        graphics.dispose();
+    }
+    
+    private Point getCellCorner(int cell) {
+        int pitch = corridorWidth + WALL_WIDTH;
+        return new Point(cell % columns * pitch + WALL_WIDTH, cell / columns * pitch + WALL_WIDTH);
+    }
+}
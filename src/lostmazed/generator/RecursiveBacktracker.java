@@ -0,0 +1,74 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.generator;
+
+import java.util.Random;
+
+/**
+ * The recursive backtracker, implemented with an explicit stack so that it
+ * works for mazes of any size.
+ * @author Matúš Sulír
+ */
+class RecursiveBacktracker {
+    private RecursiveBacktracker() {
+    }
+    
+    /**
+     * Carves the maze.
+     * @param grid the grid with no passages
+     * @param seed the random seed
+     */
+    static void carve(CellGrid grid, long seed) {
+        Random random = new Random(seed);
+        int[] stack = new int[grid.getCellCount()];
+        boolean[] visited = new boolean[grid.getCellCount()];
+        int[] candidates = new int[CellGrid.DIRECTIONS];
+        int size = 0;
+        
+        int start = random.nextInt(grid.getCellCount());
+        visited[start] = true;
+        stack[size++] = start;
+        
+        while (size > 0) {
+            int cell = stack[size - 1];
+            int count = 0;
+            
+            for (int direction = 0; direction < CellGrid.DIRECTIONS; direction++) {
+                int neighbour = grid.getNeighbour(cell, direction);
+                
+                if (neighbour != -1 && !visited[neighbour])
+                    candidates[count++] = neighbour;
+            }
+            
+            if (count == 0) {
+                size--;
+            } else {
+                int next = candidates[random.nextInt(count)];
+                grid.connect(cell, next);
+                visited[next] = true;
+                stack[size++] = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Lostmazed
+ *
+ * Copyright 2011 Matúš Sulír.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package lostmazed.generator;
+
+import java.util.Random;
+
+/**
+ * Wilson's algorithm: loop-erased random walks from each cell outside the
+ * maze until they hit the maze.
+ * @author Matúš Sulír
+ */
+class Wilson {
+    private Wilson() {
+    }
+    
+    /**
+     * Carves the maze.
+     * @param grid the grid with no passages
+     * @param seed the random seed
+     */
+    static void carve(CellGrid grid, long seed) {
+        Random random = new Random(seed);
+        boolean[] inMaze = new boolean[grid.getCellCount()];
+        byte[] exits = new byte[grid.getCellCount()];
+        
+        inMaze[random.nextInt(grid.getCellCount())] = true;
+        
+        for (int first = 0; first < grid.getCellCount(); first++) {
+            // walk randomly, remembering only the last exit of each cell, which erases the loops
+            int cell = first;
+            
+            while (!inMaze[cell]) {
+                int direction;
+                int neighbour;
+                
+                do {
+                    direction = random.nextInt(CellGrid.DIRECTIONS);
+                    neighbour = grid.getNeighbour(cell, direction);
+                } while (neighbour == -1);
+                
+                exits[cell] = (byte) direction;
+                cell = neighbour;
+            }
+            
+            cell = first;
+            
+            while (!inMaze[cell]) {
+                int next = grid.getNeighbour(cell, exits[cell]);
+                grid.connect(cell, next);
+                inMaze[cell] = true;
+                cell = next;
+            }
+        }
+    }
+}